@@ -0,0 +1,105 @@
+package isis.projet.backend.controller;
+
+import isis.projet.backend.dto.ExportDTO;
+import isis.projet.backend.security.jwt.JwtUserDetails;
+import isis.projet.backend.service.ExportJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * Exports asynchrones des feuilles de temps : création de la tâche, suivi, téléchargement
+ */
+@RestController
+@RequestMapping("/api/exports")
+public class ExportController {
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    /**
+     * Démarre un export en arrière-plan
+     * @param request Format ("csv", "pdf", "xlsx", "ndjson.gz") et période optionnelle
+     * @param authentication Informations d'authentification
+     * @return État de la tâche (202), son adresse dans l'en-tête Location
+     */
+    @PostMapping
+    public ResponseEntity<?> createExport(@RequestBody ExportDTO.ExportRequest request, Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        try {
+            ExportDTO.ExportJobStatus job = exportJobService.submit(userDetails.getId(), request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/exports/" + job.getId()))
+                    .body(job);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * État et progression d'un export
+     * @param jobId ID de la tâche
+     * @param authentication Informations d'authentification
+     * @return État de la tâche
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportDTO.ExportJobStatus> getExport(@PathVariable String jobId, Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        return exportJobService.getStatus(jobId, userDetails.getId())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Télécharge le résultat d'un export terminé (les requêtes Range sont acceptées)
+     * @param jobId ID de la tâche
+     * @param authentication Informations d'authentification
+     * @return Fichier de l'export
+     */
+    @GetMapping("/{jobId}/file")
+    public ResponseEntity<?> downloadExport(@PathVariable String jobId, Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        Optional<ExportJobService.ExportFile> file;
+        try {
+            file = exportJobService.getFile(jobId, userDetails.getId());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ExportJobService.ExportFile export = file.get();
+        Resource resource = new FileSystemResource(export.path());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(export.format().getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(export.fileName()).build().toString())
+                .header(HttpHeaders.CACHE_CONTROL, "private, no-store")
+                .body(resource);
+    }
+
+    /**
+     * Annule un export en cours ou supprime un export terminé
+     * @param jobId ID de la tâche
+     * @param authentication Informations d'authentification
+     * @return 204 si la tâche existait
+     */
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> deleteExport(@PathVariable String jobId, Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        return exportJobService.cancel(jobId, userDetails.getId())
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
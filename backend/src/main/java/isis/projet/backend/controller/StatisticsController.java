@@ -2,10 +2,15 @@ package isis.projet.backend.controller;
 
 import isis.projet.backend.dto.StatisticsDTO;
 import isis.projet.backend.security.jwt.JwtUserDetails;
+import isis.projet.backend.service.StatisticsCache;
+import isis.projet.backend.service.StatisticsRollupService;
 import isis.projet.backend.service.StatisticsService;
+import isis.projet.backend.service.UserGroupService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +24,15 @@ public class StatisticsController {
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private StatisticsRollupService statisticsRollupService;
+
+    @Autowired
+    private UserGroupService userGroupService;
+
+    @Autowired
+    private StatisticsCache statisticsCache;
+
     /**
      * Récupère les statistiques pour l'utilisateur authentifié
      * @param authentication Informations d'authentification
@@ -43,14 +57,31 @@ public class StatisticsController {
     }
 
     /**
-     * Récupère les statistiques pour un groupe
+     * Récupère les statistiques pour un groupe (réservé aux membres du groupe)
      * @param groupId ID du groupe
+     * @param from Date de début optionnelle
+     * @param to Date de fin optionnelle
+     * @param authentication Informations d'authentification
      * @return Statistiques du groupe
      */
     @GetMapping("/group/{groupId}")
-    public ResponseEntity<Map<Integer, StatisticsDTO.UserStatsSummary>> getGroupStatistics(@PathVariable Integer groupId) {
-        Map<Integer, StatisticsDTO.UserStatsSummary> statistics = statisticsService.getGroupStatistics(groupId);
-        return ResponseEntity.ok(statistics);
+    public ResponseEntity<?> getGroupStatistics(
+            @PathVariable Integer groupId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        if (!userGroupService.isGroupMember(userDetails.getId(), groupId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body("Vous devez être membre du groupe pour consulter ses statistiques");
+        }
+
+        try {
+            StatisticsDTO.GroupStatisticsResponse statistics = statisticsService.getGroupStatistics(groupId, from, to);
+            return ResponseEntity.ok(statistics);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
@@ -91,4 +122,69 @@ public class StatisticsController {
 
         return ResponseEntity.ok(statistics);
     }
-}
\ No newline at end of file
+
+    /**
+     * Récupère la distribution des durées (quantiles par tâche et catégorie, histogramme) de l'utilisateur authentifié
+     * @param from Date de début optionnelle
+     * @param to Date de fin optionnelle
+     * @param authentication Informations d'authentification
+     * @return Distribution des durées
+     */
+    @GetMapping("/distribution")
+    public ResponseEntity<?> getDurationDistribution(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(statisticsService.getDurationDistribution(userDetails.getId(), from, to));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Récupère les tâches ou les jours les plus longs de l'utilisateur authentifié
+     * @param by "tasks" ou "days"
+     * @param limit Nombre d'éléments (10 par défaut)
+     * @param from Date de début optionnelle
+     * @param to Date de fin optionnelle
+     * @param authentication Informations d'authentification
+     * @return Classement par temps total décroissant
+     */
+    @GetMapping("/top")
+    public ResponseEntity<?> getTop(
+            @RequestParam(defaultValue = "tasks") String by,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(statisticsService.getTop(userDetails.getId(), by, limit, from, to));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruit les agrégats journaliers à partir des feuilles de temps (administrateurs uniquement)
+     * @return Nombre de lignes d'agrégat créées
+     */
+    @PostMapping("/rollup/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> rebuildRollup() {
+        int rows = statisticsRollupService.rebuild();
+        return ResponseEntity.ok(Map.of("rows", rows));
+    }
+
+    /**
+     * Récupère les compteurs du cache des statistiques (administrateurs uniquement)
+     * @return Succès, échecs, évictions et taille du cache
+     */
+    @GetMapping("/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StatisticsDTO.CacheStatistics> getCacheStatistics() {
+        return ResponseEntity.ok(statisticsCache.getStatistics());
+    }
+}
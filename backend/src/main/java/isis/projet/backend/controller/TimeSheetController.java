@@ -1,31 +1,53 @@
 package isis.projet.backend.controller;
 
+import isis.projet.backend.dto.TimeSheetDTO;
 import isis.projet.backend.entity.*;
+import isis.projet.backend.repository.TimeSheetRepository;
 import isis.projet.backend.repository.TimeSheetTaskRepository;
 import isis.projet.backend.repository.UserGroupRepository;
+import isis.projet.backend.security.TimeSheetSecurityService;
 import isis.projet.backend.security.jwt.JwtUserDetails;
+import isis.projet.backend.service.ExportCache;
+import isis.projet.backend.service.ExportFormat;
+import isis.projet.backend.service.TimeSheetEventHub;
 import isis.projet.backend.service.TimeSheetService;
+import isis.projet.backend.service.TimerEventBuffer;
 import isis.projet.backend.service.UserGroupService;
 import isis.projet.backend.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/timesheets")
 public class TimeSheetController {
 
+    // Les clients peuvent garder les réponses, mais doivent les revalider (If-None-Match) à chaque utilisation
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     @Autowired
     private TimeSheetService timeSheetService;
 
@@ -38,118 +60,143 @@ public class TimeSheetController {
     @Autowired
     private UserGroupService userGroupService;
 
-    /**
-     * Vérifie si l'utilisateur a le droit de modifier une feuille de temps
-     * @param timeSheetId ID de la feuille de temps
-     * @param authentication Informations d'authentification de l'utilisateur
-     * @return true si l'utilisateur peut modifier la feuille, false sinon
-     */
-    private boolean canUserEditTimeSheet(Integer timeSheetId, Authentication authentication) {
-        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-        Integer userId = userDetails.getId();
-
-        // Récupérer la feuille de temps
-        Optional<TimeSheet> timeSheetOpt = timeSheetService.getTimeSheetById(timeSheetId);
-        if (timeSheetOpt.isEmpty()) {
-            return false;
-        }
-
-        TimeSheet timeSheet = timeSheetOpt.get();
-
-        // Cas 1: L'utilisateur est le propriétaire de la feuille
-        if (timeSheet.getUser() != null && timeSheet.getUser().getId().equals(userId)) {
-            return true;
-        }
+    @Autowired
+    private TimerEventBuffer timerEventBuffer;
 
-        // Cas 2: La feuille est partagée avec un groupe dont l'utilisateur est propriétaire
-        if (timeSheet.getSharedWithGroups() != null && !timeSheet.getSharedWithGroups().isEmpty()) {
-            for (TimeSheetShareGroup shareGroup : timeSheet.getSharedWithGroups()) {
-                Integer groupId = shareGroup.getGroupId();
+    @Autowired
+    private TimeSheetEventHub timeSheetEventHub;
 
-                // Utiliser le service pour vérifier si l'utilisateur est propriétaire du groupe
-                if (userGroupService.isGroupOwner(userId, groupId)) {
-                    return true;
-                }
-            }
-        }
+    @Autowired
+    private ExportCache exportCache;
 
-        // Aucune condition n'est remplie, l'utilisateur ne peut pas modifier
-        return false;
-    }
+    @Autowired
+    private TimeSheetSecurityService timesheetSecurityService;
 
     /**
-     * Récupère toutes les feuilles de temps de l'utilisateur connecté
+     * Récupère les feuilles de temps de l'utilisateur connecté.
+     * Sans limit, renvoie la liste complète ; avec limit, renvoie une page et le curseur de la suivante.
      * @param authentication Informations d'authentification
-     * @return Liste des feuilles de temps
+     * @param startDate Date de début optionnelle
+     * @param endDate Date de fin optionnelle
+     * @param limit Taille de page optionnelle
+     * @param cursor Curseur de la page suivante (champ next de la page précédente)
+     * @param expand Détails à inclure : tasks, shares (optionnel)
+     * @return Liste ou page des résumés de feuilles de temps
      */
     @GetMapping
-    public List<TimeSheet> getCurrentUserTimeSheets(
+    public ResponseEntity<?> getCurrentUserTimeSheets(
             Authentication authentication,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String expand,
+            WebRequest webRequest) {
 
         JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-        List<TimeSheet> timeSheets = timeSheetService.getAllTimeSheetsByUserId(userDetails.getId());
-
-        // Filtrer les feuilles de temps par date si les dates sont spécifiées
-        if (startDate != null && endDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate) && !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
-        } else if (startDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate))
-                    .collect(Collectors.toList());
-        } else if (endDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
-        }
 
-        return timeSheets;
+        try {
+            // Requête conditionnelle : une requête d'agrégat sur les versions suffit si la liste n'a pas changé
+            String eTag = timeSheetService.getTimeSheetListETag(userDetails.getId(), startDate, endDate, expand, limit, cursor);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            Object body = limit == null
+                    // Le filtrage par date est fait par la base
+                    ? timeSheetService.listTimeSheetsByUserId(userDetails.getId(), startDate, endDate, expand)
+                    : timeSheetService.getTimeSheetPageByUserId(userDetails.getId(), startDate, endDate, limit, cursor, expand);
+            return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).body(body);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
      * Récupère une feuille de temps par son ID
+     * Avec If-None-Match, seule la version est lue si la feuille n'a pas changé (304)
      * @param id ID de la feuille de temps
+     * @param webRequest Requête (en-têtes conditionnels)
      * @return Feuille de temps
      */
     @GetMapping("/{id}")
-    public ResponseEntity<TimeSheet> getTimeSheetById(@PathVariable Integer id) {
+    public ResponseEntity<TimeSheet> getTimeSheetById(@PathVariable Integer id, WebRequest webRequest) {
+        Optional<String> eTag = timeSheetService.getTimeSheetETag(id);
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            return null;
+        }
         Optional<TimeSheet> timeSheet = timeSheetService.getTimeSheetById(id);
-        return timeSheet.map(ResponseEntity::ok)
+        return timeSheet.map(ts -> ResponseEntity.ok()
+                        .eTag(TimeSheetService.eTagOf(ts.getId(), ts.getVersion()))
+                        .cacheControl(REVALIDATE)
+                        .body(ts))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
      * Récupère les feuilles de temps par date
      * @param date Date de la feuille de temps
-     * @return Liste des feuilles de temps
+     * @param expand Détails à inclure : tasks, shares (optionnel)
+     * @return Liste des résumés de feuilles de temps
      */
     @GetMapping("/byDate")
-    public List<TimeSheet> getTimeSheetsByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        return timeSheetService.getTimeSheetsByDate(date);
+    public ResponseEntity<?> getTimeSheetsByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                 @RequestParam(required = false) String expand,
+                                                 WebRequest webRequest) {
+        try {
+            String eTag = timeSheetService.getTimeSheetsByDateETag(date, expand);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE)
+                    .body(timeSheetService.listTimeSheetsByDate(date, expand));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
      * Récupère les feuilles de temps partagées avec un utilisateur
      * @param authentication Informations d'authentification
-     * @return Liste des feuilles de temps partagées
+     * @param expand Détails à inclure : tasks, shares (optionnel)
+     * @return Liste des résumés de feuilles de temps partagées
      */
     @GetMapping("/shared")
-    public List<TimeSheet> getSharedTimeSheets(Authentication authentication) {
+    public ResponseEntity<?> getSharedTimeSheets(Authentication authentication,
+                                                 @RequestParam(required = false) String expand,
+                                                 WebRequest webRequest) {
         JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-        return timeSheetService.getTimeSheetSharedWithUser(userDetails.getId());
+        try {
+            String eTag = timeSheetService.getTimeSheetsSharedWithUserETag(userDetails.getId(), expand);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE)
+                    .body(timeSheetService.listTimeSheetsSharedWithUser(userDetails.getId(), expand));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
      * Récupère les feuilles de temps partagées avec un groupe
      * @param groupId ID du groupe
-     * @return Liste des feuilles de temps partagées
+     * @param expand Détails à inclure : tasks, shares (optionnel)
+     * @return Liste des résumés de feuilles de temps partagées
      */
     @GetMapping("/group/{groupId}")
-    public List<TimeSheet> getGroupTimeSheets(@PathVariable Integer groupId) {
-        return timeSheetService.getTimeSheetSharedWithGroup(groupId);
+    public ResponseEntity<?> getGroupTimeSheets(@PathVariable Integer groupId,
+                                                @RequestParam(required = false) String expand,
+                                                WebRequest webRequest) {
+        try {
+            String eTag = timeSheetService.getTimeSheetsSharedWithGroupETag(groupId, expand);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE)
+                    .body(timeSheetService.listTimeSheetsSharedWithGroup(groupId, expand));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
@@ -193,21 +240,30 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Feuille de temps mise à jour
      */
+    @PreAuthorize("@timesheetSecurityService.canEdit(#id, authentication)")
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateTimeSheet(@PathVariable Integer id, @RequestBody TimeSheet timeSheet, Authentication authentication) {
+    public ResponseEntity<?> updateTimeSheet(@PathVariable Integer id, @RequestBody TimeSheet timeSheet,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             Authentication authentication) {
         try {
             if (!id.equals(timeSheet.getId())) {
                 return ResponseEntity.badRequest().body("ID de la feuille de temps incohérent");
             }
 
-            // Vérifier les permissions
-            if (!canUserEditTimeSheet(id, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
+            Long expectedVersion = null;
+            if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+                expectedVersion = TimeSheetService.versionOf(id, ifMatch.trim());
+                if (expectedVersion == null) {
+                    return preconditionFailed();
+                }
             }
 
-            TimeSheet updatedTimeSheet = timeSheetService.updateTimeSheet(timeSheet);
-            return ResponseEntity.ok(updatedTimeSheet);
+            TimeSheet updatedTimeSheet = timeSheetService.updateTimeSheet(timeSheet, expectedVersion);
+            return ResponseEntity.ok()
+                    .eTag(TimeSheetService.eTagOf(updatedTimeSheet.getId(), updatedTimeSheet.getVersion()))
+                    .body(updatedTimeSheet);
+        } catch (OptimisticLockingFailureException e) {
+            return preconditionFailed();
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -219,15 +275,10 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Statut de l'opération
      */
+    @PreAuthorize("@timesheetSecurityService.canEdit(#id, authentication)")
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteTimeSheet(@PathVariable Integer id, Authentication authentication) {
         try {
-            // Vérifier les permissions
-            if (!canUserEditTimeSheet(id, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de supprimer cette feuille de temps");
-            }
-
             timeSheetService.deleteTimeSheet(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -242,18 +293,13 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Tâche ajoutée
      */
+    @PreAuthorize("@timesheetSecurityService.canEdit(#timeSheetId, authentication)")
     @PostMapping("/{timeSheetId}/tasks")
     public ResponseEntity<?> addTaskToTimeSheet(
             @PathVariable Integer timeSheetId,
             @RequestBody Map<String, Object> taskData,
             Authentication authentication) {
         try {
-            // Vérifier les permissions
-            if (!canUserEditTimeSheet(timeSheetId, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
-            }
-
             Integer taskId = (Integer) taskData.get("taskId");
             Integer duration = (Integer) taskData.get("duration");
 
@@ -264,6 +310,102 @@ public class TimeSheetController {
         }
     }
 
+    /**
+     * Applique un lot d'opérations sur les tâches d'une feuille de temps (ajout, durée, complétion, suppression)
+     * en une seule requête et une seule transaction. Les droits sont vérifiés une fois pour tout le lot :
+     * droit de modification si le lot ajoute ou supprime des tâches, droit de saisie du temps sinon.
+     * @param timeSheetId ID de la feuille de temps
+     * @param request Opérations à appliquer, dans l'ordre
+     * @param authentication Informations d'authentification
+     * @return Tâches de la feuille après le lot
+     */
+    @PostMapping("/{timeSheetId}/tasks:batch")
+    public ResponseEntity<?> applyTaskBatch(
+            @PathVariable Integer timeSheetId,
+            @RequestBody TimeSheetDTO.TaskBatchRequest request,
+            Authentication authentication) {
+        try {
+            List<TimeSheetDTO.TaskOperation> operations = request.getOperations();
+            boolean structural = operations != null && operations.stream()
+                    .anyMatch(operation -> "add".equals(operation.getOp()) || "remove".equals(operation.getOp()));
+            boolean allowed = structural
+                    ? timesheetSecurityService.canEdit(timeSheetId, authentication)
+                    : timesheetSecurityService.canUpdateTasks(timeSheetId, authentication);
+            if (!allowed) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
+            }
+
+            return ResponseEntity.ok(timeSheetService.applyTaskBatch(timeSheetId, operations));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Flux (Server-Sent Events) des modifications des feuilles de l'utilisateur et de celles partagées avec lui.
+     * Événements : ready à l'ouverture, timesheet pour chaque modification validée, resync si des modifications
+     * ont été abandonnées (client trop lent). Le client recharge ses données sur ready et resync.
+     * @param authentication Informations d'authentification
+     * @return Flux d'événements
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(Authentication authentication) {
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // Pas de mise en tampon par un proxy nginx : les événements sont transmis immédiatement
+                .header("X-Accel-Buffering", "no")
+                .body(timeSheetEventHub.subscribe(userDetails.getId()));
+    }
+
+    /**
+     * Reçoit les événements du chronomètre (tick, heartbeat). Les durées sont regroupées en mémoire
+     * (la plus récente par tâche) et écrites par lots en différé ; les lectures de la feuille les voient.
+     * Les droits sont vérifiés une fois par feuille de temps du lot.
+     * @param batch Événements
+     * @param authentication Informations d'authentification
+     * @return Nombre d'événements acceptés et de durées en attente d'écriture
+     */
+    @PostMapping("/timer-events")
+    public ResponseEntity<?> ingestTimerEvents(@RequestBody TimeSheetDTO.TimerEventBatch batch, Authentication authentication) {
+        List<TimeSheetDTO.TimerEvent> events = batch.getEvents();
+        if (events == null || events.isEmpty()) {
+            return ResponseEntity.badRequest().body("Aucun événement");
+        }
+
+        Map<Integer, Integer> owners = new HashMap<>();
+        for (TimeSheetDTO.TimerEvent event : events) {
+            if (event.getTimeSheetId() == null || event.getTaskId() == null
+                    || event.getDuration() == null || event.getDuration() < 0) {
+                return ResponseEntity.badRequest().body("Chaque événement doit indiquer la feuille, la tâche et une durée positive");
+            }
+            if (!"TICK".equals(event.getType()) && !"HEARTBEAT".equals(event.getType())) {
+                return ResponseEntity.badRequest().body("Type d'événement inconnu : " + event.getType());
+            }
+            if (!owners.containsKey(event.getTimeSheetId())) {
+                Optional<TimeSheetRepository.SheetAccess> access =
+                        timesheetSecurityService.access(event.getTimeSheetId(), authentication);
+                if (access.isEmpty() || !access.get().getUpdateTasks()) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                            .body("Vous n'avez pas la permission de modifier cette feuille de temps");
+                }
+                owners.put(event.getTimeSheetId(), access.get().getOwnerId());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (TimeSheetDTO.TimerEvent event : events) {
+            timerEventBuffer.submit(event.getTimeSheetId(), event.getTaskId(), owners.get(event.getTimeSheetId()),
+                    event.getDuration(), event.getAt() != null ? event.getAt() : now);
+        }
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(TimeSheetDTO.TimerEventResult.builder()
+                .accepted(events.size())
+                .pending(timerEventBuffer.getPendingCount())
+                .build());
+    }
+
     /**
      * Partage une feuille de temps avec un utilisateur
      * @param timeSheetId ID de la feuille de temps
@@ -272,6 +414,7 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Statut de l'opération
      */
+    @PreAuthorize("@timesheetSecurityService.canEdit(#timeSheetId, authentication)")
     @PostMapping("/{timeSheetId}/share/user/{userId}")
     public ResponseEntity<?> shareTimeSheetWithUser(
             @PathVariable Integer timeSheetId,
@@ -279,12 +422,6 @@ public class TimeSheetController {
             @RequestParam String accessLevel,
             Authentication authentication) {
         try {
-            // Vérifier les permissions
-            if (!canUserEditTimeSheet(timeSheetId, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de partager cette feuille de temps");
-            }
-
             timeSheetService.shareTimeSheetWithUser(timeSheetId, userId, accessLevel);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -339,29 +476,85 @@ public class TimeSheetController {
         }
     }
 
+    /**
+     * Partage plusieurs feuilles avec plusieurs utilisateurs et/ou groupes en une requête.
+     * Les droits sont vérifiés une fois pour le lot : modification de toutes les feuilles pour un partage
+     * avec des utilisateurs ; propriété de toutes les feuilles et de tous les groupes pour un partage avec des groupes.
+     * @param request Feuilles, destinataires et niveau d'accès
+     * @param authentication Informations d'authentification
+     * @return Nombre de partages créés et mis à jour
+     */
+    @PostMapping("/shares:batch")
+    public ResponseEntity<?> shareTimeSheets(@RequestBody TimeSheetDTO.ShareBatchRequest request,
+                                             Authentication authentication) {
+        try {
+            if (!canShare(request, authentication)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Vous n'avez pas la permission de partager ces feuilles de temps");
+            }
+            return ResponseEntity.ok(timeSheetService.shareTimeSheets(request.getTimeSheetIds(), request.getUserIds(),
+                    request.getGroupIds(), request.getAccessLevel()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Retire les partages de plusieurs feuilles avec plusieurs utilisateurs et/ou groupes en une requête.
+     * Le droit de modification de toutes les feuilles est vérifié une fois pour le lot.
+     * @param request Feuilles et destinataires
+     * @param authentication Informations d'authentification
+     * @return Nombre de partages supprimés
+     */
+    @PostMapping("/shares:revoke")
+    public ResponseEntity<?> revokeTimeSheetShares(@RequestBody TimeSheetDTO.ShareBatchRequest request,
+                                                   Authentication authentication) {
+        try {
+            if (request.getTimeSheetIds() == null || request.getTimeSheetIds().isEmpty()) {
+                return ResponseEntity.badRequest().body("Aucune feuille de temps");
+            }
+            if (!timesheetSecurityService.canEditAll(request.getTimeSheetIds(), authentication)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Vous n'avez pas la permission de modifier le partage de ces feuilles de temps");
+            }
+            return ResponseEntity.ok(timeSheetService.revokeTimeSheetShares(request.getTimeSheetIds(),
+                    request.getUserIds(), request.getGroupIds()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private boolean canShare(TimeSheetDTO.ShareBatchRequest request, Authentication authentication) {
+        List<Integer> timeSheetIds = request.getTimeSheetIds();
+        if (timeSheetIds == null || timeSheetIds.isEmpty()) {
+            // Requête invalide : refusée par le service avec un message explicite
+            return true;
+        }
+        if (request.getUserIds() != null && !request.getUserIds().isEmpty()
+                && !timesheetSecurityService.canEditAll(timeSheetIds, authentication)) {
+            return false;
+        }
+        return request.getGroupIds() == null || request.getGroupIds().isEmpty()
+                || timesheetSecurityService.canShareWithGroups(timeSheetIds, request.getGroupIds(), authentication);
+    }
+
     /**
      * Exporte les feuilles de temps en CSV
      * @param authentication Informations d'authentification
      * @param startDate Date de début optionnelle
      * @param endDate Date de fin optionnelle
+     * @param webRequest Requête (en-têtes conditionnels)
      * @return Fichier CSV
      */
     @GetMapping("/export/csv")
-    public ResponseEntity<byte[]> exportTimeSheetsToCsv(
+    public ResponseEntity<?> exportTimeSheetsToCsv(
             Authentication authentication,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
 
         JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-
-        byte[] csvData = timeSheetService.exportTimeSheetsToCsv(userDetails.getId(), startDate, endDate);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType("text/csv"));
-        headers.setContentDispositionFormData("filename", "timesheets.csv");
-        headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-
-        return new ResponseEntity<>(csvData, headers, HttpStatus.OK);
+        return export(ExportFormat.CSV, userDetails.getId(), startDate, endDate, webRequest);
     }
 
 
@@ -370,23 +563,93 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @param startDate Date de début optionnelle
      * @param endDate Date de fin optionnelle
+     * @param webRequest Requête (en-têtes conditionnels)
      * @return Fichier PDF
      */
     @GetMapping("/export/pdf")
-    public ResponseEntity<byte[]> exportTimeSheetsToPdf(
+    public ResponseEntity<?> exportTimeSheetsToPdf(
             Authentication authentication,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
 
         JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-        byte[] pdfData = timeSheetService.exportTimeSheetsToPdf(userDetails.getId(), startDate, endDate);
+        return export(ExportFormat.PDF, userDetails.getId(), startDate, endDate, webRequest);
+    }
 
+    /**
+     * Exporte les feuilles de temps de l'utilisateur en XLSX (classeur écrit en flux).
+     * @param authentication Informations d'authentification
+     * @param startDate Date de début optionnelle
+     * @param endDate Date de fin optionnelle
+     * @param webRequest Requête (en-têtes conditionnels)
+     * @return Fichier XLSX
+     */
+    @GetMapping("/export/xlsx")
+    public ResponseEntity<?> exportTimeSheetsToXlsx(
+            Authentication authentication,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        return export(ExportFormat.XLSX, userDetails.getId(), startDate, endDate, webRequest);
+    }
+
+    /**
+     * Exporte les feuilles de temps de l'utilisateur en JSON délimité par des retours à la ligne, compressé en gzip.
+     * @param authentication Informations d'authentification
+     * @param startDate Date de début optionnelle
+     * @param endDate Date de fin optionnelle
+     * @param webRequest Requête (en-têtes conditionnels)
+     * @return Fichier NDJSON compressé
+     */
+    @GetMapping("/export/ndjson.gz")
+    public ResponseEntity<?> exportTimeSheetsToNdjsonGz(
+            Authentication authentication,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+
+        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
+        return export(ExportFormat.NDJSON_GZ, userDetails.getId(), startDate, endDate, webRequest);
+    }
+
+    /**
+     * Réponse d'un export. Un export déjà généré pour la même version des données est servi depuis le cache
+     * disque (requêtes Range acceptées) ; sinon il est écrit dans la réponse au fil du curseur, sur un thread
+     * de traitement asynchrone, et conservé pour les téléchargements suivants.
+     */
+    private ResponseEntity<?> export(ExportFormat format, Integer userId, LocalDate startDate, LocalDate endDate,
+                                     WebRequest webRequest) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("filename", "timesheets.pdf");
+        headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+        headers.setContentDispositionFormData("filename", "timesheets." + format.getExtension());
         headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
 
-        return new ResponseEntity<>(pdfData, headers, HttpStatus.OK);
+        if (!exportCache.isEnabled()) {
+            StreamingResponseBody body = out -> timeSheetService.writeExport(format, userId, startDate, endDate, out, null);
+            headers.set("X-Accel-Buffering", "no");
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        }
+
+        String key = exportCache.keyOf(userId, format, startDate, endDate,
+                timeSheetService.getExportVersion(userId, startDate, endDate));
+        String eTag = "\"export-" + key + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        headers.setETag(eTag);
+
+        Optional<Path> cached = exportCache.get(key);
+        if (cached.isPresent()) {
+            return new ResponseEntity<Resource>(new FileSystemResource(cached.get()), headers, HttpStatus.OK);
+        }
+
+        StreamingResponseBody body = out -> exportCache.write(key, format, out,
+                file -> timeSheetService.writeExport(format, userId, startDate, endDate, file, null));
+        headers.set("X-Accel-Buffering", "no");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
 
@@ -399,26 +662,66 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Statut de l'opération
      */
+    @PreAuthorize("@timesheetSecurityService.canUpdateTasks(#timeSheetId, authentication)")
     @PutMapping("/{timeSheetId}/tasks/{taskId}")
     public ResponseEntity<?> updateTaskDuration(
             @PathVariable Integer timeSheetId,
             @PathVariable Integer taskId,
             @RequestBody Map<String, Integer> taskData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication) {
         try {
-            if (!canUserUpdateTaskTime(timeSheetId, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
-            }
+            Long expectedVersion = expectedVersion(timeSheetId, ifMatch);
 
             Integer durationInSeconds = taskData.get("duration");
             if (durationInSeconds == null) {
                 return ResponseEntity.badRequest().body("La durée est requise");
             }
 
-            TimeSheetTask updatedTask = timeSheetService.updateTaskDuration(timeSheetId, taskId, durationInSeconds);
+            TimeSheetTask updatedTask = timeSheetService.updateTaskDuration(timeSheetId, taskId, durationInSeconds, expectedVersion);
 
             return ResponseEntity.ok(updatedTask);
+        } catch (OptimisticLockingFailureException e) {
+            return preconditionFailed();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Modifie la durée d'une tâche dans une feuille de temps : {"add": n} ajoute n minutes (n peut être négatif)
+     * par un incrément atomique, sans perte d'écriture si plusieurs clients ajoutent du temps en même temps ;
+     * {"duration": n} remplace la durée comme PUT (et respecte If-Match).
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     * @param taskData Durée à ajouter (add) ou nouvelle durée (duration)
+     * @param ifMatch ETag attendu de la feuille (optionnel)
+     * @param authentication Informations d'authentification
+     * @return Tâche mise à jour
+     */
+    @PreAuthorize("@timesheetSecurityService.canUpdateTasks(#timeSheetId, authentication)")
+    @PatchMapping("/{timeSheetId}/tasks/{taskId}")
+    public ResponseEntity<?> patchTaskDuration(
+            @PathVariable Integer timeSheetId,
+            @PathVariable Integer taskId,
+            @RequestBody Map<String, Integer> taskData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            Authentication authentication) {
+        try {
+            Integer delta = taskData.get("add");
+            Integer duration = taskData.get("duration");
+            if ((delta == null) == (duration == null)) {
+                return ResponseEntity.badRequest().body("Indiquez soit une durée à ajouter (add), soit une durée (duration)");
+            }
+
+            if (delta != null) {
+                // Un incrément ne dépend pas de la valeur lue par le client : If-Match n'est pas exigé
+                return ResponseEntity.ok(timeSheetService.incrementTaskDuration(timeSheetId, taskId, delta));
+            }
+            return ResponseEntity.ok(timeSheetService.updateTaskDuration(timeSheetId, taskId, duration,
+                    expectedVersion(timeSheetId, ifMatch)));
+        } catch (OptimisticLockingFailureException e) {
+            return preconditionFailed();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -432,26 +735,27 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Statut de l'opération
      */
+    @PreAuthorize("@timesheetSecurityService.canUpdateTasks(#timeSheetId, authentication)")
     @PutMapping("/{timeSheetId}/tasks/{taskId}/complete")
     public ResponseEntity<?> updateTaskCompletionState(
             @PathVariable Integer timeSheetId,
             @PathVariable Integer taskId,
             @RequestBody Map<String, Boolean> completionData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication) {
         try {
-            if (!canUserUpdateTaskTime(timeSheetId, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
-            }
+            Long expectedVersion = expectedVersion(timeSheetId, ifMatch);
 
             Boolean isCompleted = completionData.get("completed");
             if (isCompleted == null) {
                 return ResponseEntity.badRequest().body("L'état de complétion est requis");
             }
 
-            TimeSheetTask updatedTask = timeSheetService.updateTaskCompletionState(timeSheetId, taskId, isCompleted);
+            TimeSheetTask updatedTask = timeSheetService.updateTaskCompletionState(timeSheetId, taskId, isCompleted, expectedVersion);
 
             return ResponseEntity.ok(updatedTask);
+        } catch (OptimisticLockingFailureException e) {
+            return preconditionFailed();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -464,17 +768,13 @@ public class TimeSheetController {
      * @param authentication Informations d'authentification
      * @return Statut de l'opération
      */
+    @PreAuthorize("@timesheetSecurityService.canEdit(#timeSheetId, authentication)")
     @DeleteMapping("/{timeSheetId}/tasks/{taskId}")
     public ResponseEntity<?> removeTaskFromTimeSheet(
             @PathVariable Integer timeSheetId,
             @PathVariable Integer taskId,
             Authentication authentication) {
         try {
-            if (!canUserEditTimeSheet(timeSheetId, authentication)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body("Vous n'avez pas la permission de modifier cette feuille de temps");
-            }
-
             timeSheetService.removeTaskFromTimeSheet(timeSheetId, taskId);
 
             return ResponseEntity.ok().build();
@@ -483,30 +783,41 @@ public class TimeSheetController {
         }
     }
 
-    private boolean canUserUpdateTaskTime(Integer timeSheetId, Authentication authentication) {
-        JwtUserDetails userDetails = (JwtUserDetails) authentication.getPrincipal();
-        Integer userId = userDetails.getId();
-
-        Optional<TimeSheet> timeSheetOpt = timeSheetService.getTimeSheetById(timeSheetId);
-        if (timeSheetOpt.isEmpty()) {
-            return false;
+    /**
+     * Version attendue d'après l'en-tête If-Match, vérifiée par le service sous le verrou de la feuille
+     * @param timeSheetId ID de la feuille de temps
+     * @param ifMatch En-tête If-Match (optionnel)
+     * @return Version attendue, null si l'en-tête est absent ou vaut *
+     * @throws ObjectOptimisticLockingFailureException si l'en-tête ne désigne pas cette feuille
+     */
+    private Long expectedVersion(Integer timeSheetId, String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return null;
         }
-
-        TimeSheet timeSheet = timeSheetOpt.get();
-        if (timeSheet.getUser() != null && timeSheet.getUser().getId().equals(userId)) {
-            return true;
+        Long version = TimeSheetService.versionOf(timeSheetId, ifMatch.trim());
+        if (version == null) {
+            throw new ObjectOptimisticLockingFailureException(TimeSheet.class, timeSheetId);
         }
+        return version;
+    }
 
-        if (timeSheet.getSharedWithGroups() != null && !timeSheet.getSharedWithGroups().isEmpty()) {
-            for (TimeSheetShareGroup shareGroup : timeSheet.getSharedWithGroups()) {
-                Integer groupId = shareGroup.getGroupId();
-
-                if (userGroupService.isGroupMember(userId, groupId)) {
-                    return true;
-                }
-            }
-        }
+    /**
+     * Refus d'un @PreAuthorize : 403 avec le message habituel de l'opération
+     * @param request Requête refusée
+     * @return Réponse 403
+     */
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<String> accessDenied(HttpServletRequest request) {
+        String action = request.getRequestURI().contains("/share/") ? "partager"
+                : "DELETE".equals(request.getMethod()) && !request.getRequestURI().contains("/tasks/") ? "supprimer"
+                : "modifier";
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body("Vous n'avez pas la permission de " + action + " cette feuille de temps");
+    }
 
-        return false;
+    private ResponseEntity<String> preconditionFailed() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body("La feuille de temps a été modifiée entre-temps, rechargez-la avant de la modifier");
     }
-}
\ No newline at end of file
+
+}
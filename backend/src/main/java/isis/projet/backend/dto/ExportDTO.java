@@ -0,0 +1,49 @@
+package isis.projet.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public class ExportDTO {
+
+    /**
+     * Demande d'export asynchrone : format ("csv", "pdf", "xlsx", "ndjson.gz") et période optionnelle
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ExportRequest {
+        private String format;
+        private LocalDate startDate;
+        private LocalDate endDate;
+    }
+
+    /**
+     * État d'une tâche d'export.
+     * status : QUEUED, RUNNING, DONE ou FAILED ; progress est un pourcentage (0 à 100).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ExportJobStatus {
+        private String id;
+        private String format;
+        private String status;
+        private Integer progress;
+        private Long rowsWritten;
+        private Long totalRows;
+        private Long size;
+        private String error;
+        private Instant createdAt;
+        private Instant completedAt;
+        private Instant expiresAt;
+    }
+}
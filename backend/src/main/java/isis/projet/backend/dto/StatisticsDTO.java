@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -90,5 +91,122 @@ public class StatisticsDTO {
         private PeriodStats dailyStats;
         private PeriodStats weeklyStats;
         private PeriodStats monthlyStats;
+        private List<String> incompleteSections; // Champs non calculés (délai dépassé ou erreur), null si complet
     }
-}
\ No newline at end of file
+
+    /**
+     * Statistiques d'un groupe : totaux, détail par membre, par tâche et par jour
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class GroupStatisticsResponse {
+        private Integer groupId;
+        private String groupName;
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Integer totalTimeSheets;
+        private Integer totalTasks;
+        private Integer completedTasks;
+        private Integer totalTimeInMinutes;
+        private Double completionRate;
+        private Map<Integer, UserStatsSummary> members; // Clé: ID du membre
+        private List<CategoryStats> categories;
+        private PeriodStats dailyStats;
+        private PeriodStats weeklyStats;
+        private PeriodStats monthlyStats;
+        private List<String> incompleteSections; // Champs non calculés (délai dépassé ou erreur), null si complet
+    }
+
+    /**
+     * Compteurs du cache des statistiques
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CacheStatistics {
+        private Long hits;
+        private Long misses;
+        private Double hitRate;
+        private Long evictions; // Évictions par taille ou durée de vie
+        private Long invalidations; // Invalidations suite à une modification
+        private Long size;
+    }
+
+    /**
+     * Quantiles des durées des entrées d'une tâche ou d'une catégorie
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PercentileStats {
+        private Integer taskId; // null pour une catégorie
+        private String name; // Nom de la tâche ou catégorie
+        private String category;
+        private Long count; // Nombre d'entrées
+        private Double p50;
+        private Double p90;
+        private Double p99;
+    }
+
+    /**
+     * Intervalle d'histogramme des durées
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class HistogramBucket {
+        private Double lowerBound; // Minutes (exclue, sauf pour l'intervalle des durées nulles)
+        private Double upperBound; // Minutes (incluse)
+        private Long count;
+    }
+
+    /**
+     * Distribution des durées des entrées sur une période (quantiles approchés, erreur relative bornée)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DistributionResponse {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Double relativeAccuracy; // Erreur relative maximale des quantiles
+        private PercentileStats overall;
+        private List<PercentileStats> tasks;
+        private List<PercentileStats> categories;
+        private List<HistogramBucket> histogram;
+    }
+
+    /**
+     * Élément d'un classement (tâche ou jour)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TopEntry {
+        private String key; // ID de la tâche ou date (yyyy-MM-dd)
+        private String label;
+        private Integer totalTimeInMinutes;
+    }
+
+    /**
+     * Classement des tâches ou des jours les plus longs sur une période
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TopResponse {
+        private String by; // "tasks" ou "days"
+        private Integer limit;
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private List<TopEntry> entries;
+    }
+}
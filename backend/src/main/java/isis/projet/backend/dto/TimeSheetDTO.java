@@ -0,0 +1,206 @@
+package isis.projet.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+public class TimeSheetDTO {
+
+    /**
+     * Feuille de temps telle qu'affichée dans les listes.
+     * Les tâches et les partages ne sont présents que s'ils ont été demandés (expand=tasks,shares) ;
+     * ils reprennent les noms de champs de l'entité pour rester compatibles avec le client.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class TimeSheetSummary {
+        private Integer id;
+        private Long version;
+        private LocalDate entryDate;
+        private String icon;
+        private String title;
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private String startTime;
+        private String endTime;
+        private Long taskCount;
+        private Long completedTaskCount;
+        private Long totalDuration;
+        private List<TaskLine> timeSheetTasks;
+        private List<UserShare> sharedWithUsers;
+        private List<GroupShare> sharedWithGroups;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TaskLine {
+        private Integer timeSheetId;
+        private Integer taskId;
+        private String taskName;
+        private Integer duration;
+        private Boolean completed;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UserShare {
+        private Integer timeSheetId;
+        private Integer userId;
+        private String accessLevel;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class GroupShare {
+        private Integer timeSheetId;
+        private Integer groupId;
+        private String accessLevel;
+    }
+
+    /**
+     * Opération d'un lot sur les tâches d'une feuille de temps.
+     * op : "add" (taskId, duration), "update" (taskId, duration), "complete" (taskId, completed) ou "remove" (taskId)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TaskOperation {
+        private String op;
+        private Integer taskId;
+        private Integer duration;
+        private Boolean completed;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TaskBatchRequest {
+        private List<TaskOperation> operations;
+    }
+
+    /**
+     * Résultat d'un lot : nombre d'opérations appliquées et tâches de la feuille après le lot
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TaskBatchResult {
+        private Integer timeSheetId;
+        private int added;
+        private int updated;
+        private int removed;
+        private List<TaskLine> tasks;
+    }
+
+    /**
+     * Partage (ou retrait de partage) de plusieurs feuilles avec plusieurs utilisateurs et/ou groupes.
+     * accessLevel (READ, WRITE) n'est utilisé que pour le partage
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ShareBatchRequest {
+        private List<Integer> timeSheetIds;
+        private List<Integer> userIds;
+        private List<Integer> groupIds;
+        private String accessLevel;
+    }
+
+    /**
+     * Résultat d'un partage en masse : partages créés, mis à jour (niveau d'accès) ou supprimés
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ShareBatchResult {
+        private int timeSheets;
+        private int created;
+        private int updated;
+        private int removed;
+    }
+
+    /**
+     * Événement du chronomètre : durée courante d'une tâche.
+     * type : "TICK" (durée confirmée) ou "HEARTBEAT" (chronomètre en cours) ; at : horodatage client en millisecondes,
+     * le plus récent l'emporte pour une même tâche
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TimerEvent {
+        private Integer timeSheetId;
+        private Integer taskId;
+        private String type;
+        private Integer duration;
+        private Long at;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TimerEventBatch {
+        private List<TimerEvent> events;
+    }
+
+    /**
+     * Accusé de réception : les durées sont écrites en différé
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TimerEventResult {
+        private int accepted;
+        private int pending;
+    }
+
+    /**
+     * Modification d'une feuille de temps diffusée sur /api/timesheets/stream
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TimeSheetChange {
+        private String type;
+        private Integer timeSheetId;
+        private Integer ownerId;
+        private Set<LocalDate> entryDates;
+    }
+
+    /**
+     * Page de feuilles de temps, de la plus récente à la plus ancienne.
+     * next est un curseur opaque à repasser au paramètre cursor pour obtenir la page suivante,
+     * null s'il n'y a plus de feuilles.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TimeSheetPage {
+        private List<TimeSheetSummary> items;
+        private String next;
+    }
+}
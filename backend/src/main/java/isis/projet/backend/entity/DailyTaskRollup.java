@@ -0,0 +1,44 @@
+package isis.projet.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Agrégat journalier des entrées d'un utilisateur pour une tâche.
+ * Maintenu par TimeSheetService à chaque modification et reconstructible
+ * à partir de TIME_SHEET et TIME_SHEET_TASK.
+ */
+@Entity
+@Table(name = "DAILY_TASK_ROLLUP", indexes = @Index(name = "idx_daily_task_rollup_user_date", columnList = "user_id, entry_date"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(DailyTaskRollupId.class)
+public class DailyTaskRollup {
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Id
+    @Column(name = "task_id")
+    private Integer taskId;
+
+    @Id
+    @Column(name = "entry_date")
+    private LocalDate entryDate;
+
+    @Column(name = "entry_count", nullable = false)
+    private Integer entryCount;
+
+    @Column(name = "active_count", nullable = false)
+    private Integer activeCount; // Entrées avec une durée > 0
+
+    @Column(name = "completed_count", nullable = false)
+    private Integer completedCount;
+
+    @Column(name = "total_duration", nullable = false)
+    private Integer totalDuration;
+}
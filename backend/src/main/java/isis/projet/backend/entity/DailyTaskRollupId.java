@@ -0,0 +1,14 @@
+package isis.projet.backend.entity;
+
+import lombok.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyTaskRollupId implements Serializable {
+    private Integer userId;
+    private Integer taskId;
+    private LocalDate entryDate;
+}
@@ -0,0 +1,39 @@
+package isis.projet.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Compteur d'un sketch de distribution des durées : nombre d'entrées d'un utilisateur,
+ * pour une tâche et un jour, dont la durée tombe dans un intervalle logarithmique (voir DurationSketch).
+ * Les sketches de plusieurs jours se fusionnent en sommant les compteurs d'un même intervalle.
+ */
+@Entity
+@Table(name = "DURATION_SKETCH", indexes = @Index(name = "idx_duration_sketch_user_date", columnList = "user_id, entry_date"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(DurationSketchBucketId.class)
+public class DurationSketchBucket {
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Id
+    @Column(name = "task_id")
+    private Integer taskId;
+
+    @Id
+    @Column(name = "entry_date")
+    private LocalDate entryDate;
+
+    @Id
+    @Column(name = "bucket")
+    private Integer bucket;
+
+    @Column(name = "entry_count", nullable = false)
+    private Integer entryCount;
+}
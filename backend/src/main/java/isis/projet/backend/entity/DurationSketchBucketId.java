@@ -0,0 +1,15 @@
+package isis.projet.backend.entity;
+
+import lombok.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DurationSketchBucketId implements Serializable {
+    private Integer userId;
+    private Integer taskId;
+    private LocalDate entryDate;
+    private Integer bucket;
+}
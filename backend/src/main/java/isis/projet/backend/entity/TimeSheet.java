@@ -4,21 +4,34 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDate;
 import java.util.*;
 
 @Entity
-@Table(name = "TIME_SHEET")
+// Plans de chargement par cas d'usage : une seule requête au lieu d'un chargement paresseux par feuille
+@NamedEntityGraph(name = TimeSheet.GRAPH_AUTHORIZATION,
+        attributeNodes = {@NamedAttributeNode("user"), @NamedAttributeNode(value = "sharedWithGroups", subgraph = "groups")},
+        subgraphs = @NamedSubgraph(name = "groups", attributeNodes = @NamedAttributeNode("group")))
+@Table(name = "TIME_SHEET", indexes = @Index(name = "idx_time_sheet_user_date_id", columnList = "user_id, entry_date, time_sheet_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class TimeSheet {
+    public static final String GRAPH_AUTHORIZATION = "TimeSheet.authorization";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "time_sheet_id")
     private Integer id;
 
+    // Version de la feuille, incrémentée à chaque modification de la feuille, de ses tâches ou de ses partages (ETag)
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "entry_date", nullable = false)
     private LocalDate entryDate;
 
@@ -3,6 +3,7 @@ package isis.projet.backend.entity;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(name = "TIME_SHEET_TASK")
@@ -20,6 +21,11 @@ public class TimeSheetTask {
     @Column(name = "time_sheet_id")
     private Integer timeSheetId;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "duration", nullable = false)
     private Integer duration;
 
@@ -0,0 +1,124 @@
+package isis.projet.backend.repository;
+
+import isis.projet.backend.entity.DailyTaskRollup;
+import isis.projet.backend.entity.DailyTaskRollupId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DailyTaskRollupRepository extends JpaRepository<DailyTaskRollup, DailyTaskRollupId> {
+
+    /**
+     * Totaux de contrôle (agrégats ou entrées brutes)
+     */
+    interface Totals {
+        Long getEntries();
+        Long getCompleted();
+        Long getDuration();
+    }
+
+    @Modifying
+    @Query("UPDATE DailyTaskRollup r SET r.entryCount = r.entryCount + :entries, " +
+            "r.activeCount = r.activeCount + :active, " +
+            "r.completedCount = r.completedCount + :completed, " +
+            "r.totalDuration = r.totalDuration + :duration " +
+            "WHERE r.userId = :userId AND r.taskId = :taskId AND r.entryDate = :entryDate")
+    int increment(@Param("userId") Integer userId,
+                  @Param("taskId") Integer taskId,
+                  @Param("entryDate") LocalDate entryDate,
+                  @Param("entries") int entries,
+                  @Param("active") int active,
+                  @Param("completed") int completed,
+                  @Param("duration") int duration);
+
+    /**
+     * Crée la ligne d'agrégat si elle n'existe pas encore
+     * @return 1 si la ligne a été créée, 0 si une autre transaction l'a créée entre-temps
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+            "INSERT INTO DAILY_TASK_ROLLUP (user_id, task_id, entry_date, entry_count, active_count, completed_count, total_duration) " +
+            "VALUES (:userId, :taskId, :entryDate, :entries, :active, :completed, :duration) " +
+            "ON CONFLICT DO NOTHING")
+    int insertIfAbsent(@Param("userId") Integer userId,
+                       @Param("taskId") Integer taskId,
+                       @Param("entryDate") LocalDate entryDate,
+                       @Param("entries") int entries,
+                       @Param("active") int active,
+                       @Param("completed") int completed,
+                       @Param("duration") int duration);
+
+    @Modifying
+    @Query("DELETE FROM DailyTaskRollup r " +
+            "WHERE r.userId = :userId AND r.taskId = :taskId AND r.entryDate = :entryDate AND r.entryCount <= 0")
+    int deleteIfEmpty(@Param("userId") Integer userId,
+                      @Param("taskId") Integer taskId,
+                      @Param("entryDate") LocalDate entryDate);
+
+    @Query("SELECT COALESCE(SUM(r.entryCount), 0) AS entries, COALESCE(SUM(r.completedCount), 0) AS completed, " +
+            "COALESCE(SUM(r.totalDuration), 0) AS duration FROM DailyTaskRollup r")
+    Totals sumRollup();
+
+    @Query("SELECT COUNT(tst) AS entries, COALESCE(SUM(CASE WHEN tst.completed = true THEN 1 ELSE 0 END), 0) AS completed, " +
+            "COALESCE(SUM(tst.duration), 0) AS duration FROM TimeSheetTask tst")
+    Totals sumTimeSheetEntries();
+
+    /**
+     * Recalcule tous les agrégats à partir des tables brutes
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+            "INSERT INTO DAILY_TASK_ROLLUP (user_id, task_id, entry_date, entry_count, active_count, completed_count, total_duration) " +
+            "SELECT ts.user_id, tst.task_id, ts.entry_date, COUNT(*), " +
+            "SUM(CASE WHEN tst.duration > 0 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN tst.completed THEN 1 ELSE 0 END), " +
+            "SUM(tst.duration) " +
+            "FROM TIME_SHEET_TASK tst JOIN TIME_SHEET ts ON ts.time_sheet_id = tst.time_sheet_id " +
+            "GROUP BY ts.user_id, tst.task_id, ts.entry_date")
+    int insertFromTimeSheets();
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = StatisticsRepository.STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT r.entryDate AS entryDate, t.id AS taskId, t.name AS taskName, t.repetition AS repetition, " +
+            "SUM(r.entryCount) AS entries, SUM(r.activeCount) AS activeEntries, SUM(r.totalDuration) AS totalDuration " +
+            "FROM DailyTaskRollup r JOIN Task t ON t.id = r.taskId " +
+            "WHERE r.userId = :userId AND r.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY r.entryDate, t.id, t.name, t.repetition " +
+            "ORDER BY r.entryDate")
+    Stream<StatisticsRepository.DayTaskTotal> streamEntriesByDayAndTaskAndDateRange(@Param("userId") Integer userId,
+                                                                                    @Param("startDate") LocalDate startDate,
+                                                                                    @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT r.userId AS userId, SUM(r.entryCount) AS entries, " +
+            "SUM(r.activeCount) AS activeEntries, SUM(r.totalDuration) AS totalDuration " +
+            "FROM DailyTaskRollup r " +
+            "WHERE r.userId IN (SELECT ug.userId FROM UserGroup ug WHERE ug.groupId = :groupId) " +
+            "AND r.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY r.userId")
+    List<StatisticsRepository.MemberTotal> sumEntriesByGroupMember(@Param("groupId") Integer groupId,
+                                                                   @Param("startDate") LocalDate startDate,
+                                                                   @Param("endDate") LocalDate endDate);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = StatisticsRepository.STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT r.entryDate AS entryDate, t.id AS taskId, t.name AS taskName, t.repetition AS repetition, " +
+            "SUM(r.entryCount) AS entries, SUM(r.activeCount) AS activeEntries, SUM(r.totalDuration) AS totalDuration " +
+            "FROM DailyTaskRollup r JOIN Task t ON t.id = r.taskId " +
+            "WHERE r.userId IN (SELECT ug.userId FROM UserGroup ug WHERE ug.groupId = :groupId) " +
+            "AND r.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY r.entryDate, t.id, t.name, t.repetition " +
+            "ORDER BY r.entryDate")
+    Stream<StatisticsRepository.DayTaskTotal> streamEntriesByDayAndTaskForGroup(@Param("groupId") Integer groupId,
+                                                                                @Param("startDate") LocalDate startDate,
+                                                                                @Param("endDate") LocalDate endDate);
+}
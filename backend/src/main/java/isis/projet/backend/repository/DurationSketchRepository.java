@@ -0,0 +1,91 @@
+package isis.projet.backend.repository;
+
+import isis.projet.backend.entity.DurationSketchBucket;
+import isis.projet.backend.entity.DurationSketchBucketId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DurationSketchRepository extends JpaRepository<DurationSketchBucket, DurationSketchBucketId> {
+
+    /**
+     * Compteurs d'un intervalle de durée pour une tâche, fusionnés sur une période
+     */
+    interface TaskBucketCount {
+        Integer getTaskId();
+        String getTaskName();
+        String getRepetition();
+        Integer getBucket();
+        Long getEntries();
+    }
+
+    /**
+     * Nombre d'entrées par durée exacte (reconstruction des sketches)
+     */
+    interface DurationCount {
+        Integer getUserId();
+        Integer getTaskId();
+        LocalDate getEntryDate();
+        Integer getDuration();
+        Long getEntries();
+    }
+
+    @Modifying
+    @Query("UPDATE DurationSketchBucket s SET s.entryCount = s.entryCount + :entries " +
+            "WHERE s.userId = :userId AND s.taskId = :taskId AND s.entryDate = :entryDate AND s.bucket = :bucket")
+    int increment(@Param("userId") Integer userId,
+                  @Param("taskId") Integer taskId,
+                  @Param("entryDate") LocalDate entryDate,
+                  @Param("bucket") int bucket,
+                  @Param("entries") int entries);
+
+    /**
+     * Crée l'intervalle s'il n'existe pas encore
+     * @return 1 si la ligne a été créée, 0 si une autre transaction l'a créée entre-temps
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+            "INSERT INTO DURATION_SKETCH (user_id, task_id, entry_date, bucket, entry_count) " +
+            "VALUES (:userId, :taskId, :entryDate, :bucket, :entries) " +
+            "ON CONFLICT DO NOTHING")
+    int insertIfAbsent(@Param("userId") Integer userId,
+                       @Param("taskId") Integer taskId,
+                       @Param("entryDate") LocalDate entryDate,
+                       @Param("bucket") int bucket,
+                       @Param("entries") int entries);
+
+    @Modifying
+    @Query("DELETE FROM DurationSketchBucket s " +
+            "WHERE s.userId = :userId AND s.taskId = :taskId AND s.entryDate = :entryDate AND s.bucket = :bucket " +
+            "AND s.entryCount <= 0")
+    int deleteIfEmpty(@Param("userId") Integer userId,
+                      @Param("taskId") Integer taskId,
+                      @Param("entryDate") LocalDate entryDate,
+                      @Param("bucket") int bucket);
+
+    @Query("SELECT COALESCE(SUM(s.entryCount), 0) FROM DurationSketchBucket s")
+    long sumEntryCount();
+
+    @Query("SELECT t.id AS taskId, t.name AS taskName, t.repetition AS repetition, s.bucket AS bucket, " +
+            "SUM(s.entryCount) AS entries " +
+            "FROM DurationSketchBucket s JOIN Task t ON t.id = s.taskId " +
+            "WHERE s.userId = :userId AND s.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY t.id, t.name, t.repetition, s.bucket")
+    List<TaskBucketCount> sumByTaskAndBucket(@Param("userId") Integer userId,
+                                             @Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT ts.user.id AS userId, tst.taskId AS taskId, ts.entryDate AS entryDate, tst.duration AS duration, " +
+            "COUNT(tst) AS entries " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts " +
+            "GROUP BY ts.user.id, tst.taskId, ts.entryDate, tst.duration " +
+            "ORDER BY ts.user.id, tst.taskId, ts.entryDate")
+    Stream<DurationCount> streamDurationCounts();
+}
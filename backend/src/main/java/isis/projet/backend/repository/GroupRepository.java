@@ -6,11 +6,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface GroupRepository extends JpaRepository<Group, Integer> {
+    long countByIdIn(Collection<Integer> ids);
+
     Optional<Group> findByInvitCode(String invitCode);
 
     @Query("SELECT DISTINCT g FROM Group g JOIN g.userGroups ug WHERE ug.user.id = :userId")
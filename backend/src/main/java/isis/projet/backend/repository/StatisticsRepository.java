@@ -0,0 +1,146 @@
+package isis.projet.backend.repository;
+
+import isis.projet.backend.entity.TimeSheetTask;
+import isis.projet.backend.entity.TimeSheetTaskId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Requêtes d'agrégation pour les statistiques.
+ * Les calculs sont faits par la base (GROUP BY) sur TIME_SHEET ⨝ TIME_SHEET_TASK ⨝ TASK
+ * au lieu de charger chaque feuille et chaque tâche en mémoire.
+ */
+@Repository
+public interface StatisticsRepository extends org.springframework.data.repository.Repository<TimeSheetTask, TimeSheetTaskId> {
+
+    /**
+     * Nombre de lignes lues par aller-retour JDBC pour les requêtes en flux
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Totaux des entrées (tâches de feuilles de temps)
+     */
+    interface EntryTotals {
+        Long getEntries();
+        Long getActiveEntries(); // Entrées avec une durée > 0
+        Long getTotalDuration();
+    }
+
+    /**
+     * Totaux des entrées pour une tâche et une journée
+     */
+    interface DayTaskTotal {
+        LocalDate getEntryDate();
+        Integer getTaskId();
+        String getTaskName();
+        String getRepetition();
+        Long getEntries();
+        Long getActiveEntries();
+        Long getTotalDuration();
+    }
+
+    /**
+     * Entrée brute d'une feuille de temps (magasin en colonnes)
+     */
+    interface EntryRow {
+        LocalDate getEntryDate();
+        Integer getTaskId();
+        Integer getDuration();
+        Boolean getCompleted();
+    }
+
+    /**
+     * Totaux des entrées d'un membre de groupe
+     */
+    interface MemberTotal extends EntryTotals {
+        Integer getUserId();
+    }
+
+    /**
+     * Nombre de feuilles de temps d'un membre de groupe
+     */
+    interface MemberTimeSheetCount {
+        Integer getUserId();
+        Long getTimeSheets();
+    }
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT ts.entryDate AS entryDate, t.id AS taskId, t.name AS taskName, t.repetition AS repetition, " +
+            "COUNT(tst) AS entries, SUM(CASE WHEN tst.duration > 0 THEN 1 ELSE 0 END) AS activeEntries, " +
+            "SUM(tst.duration) AS totalDuration " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts JOIN tst.task t " +
+            "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY ts.entryDate, t.id, t.name, t.repetition " +
+            "ORDER BY ts.entryDate")
+    Stream<DayTaskTotal> streamEntriesByDayAndTaskAndDateRange(@Param("userId") Integer userId,
+                                                               @Param("startDate") LocalDate startDate,
+                                                               @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT ts.user.id AS userId, COUNT(ts) AS timeSheets FROM TimeSheet ts " +
+            "WHERE ts.user.id IN (SELECT ug.userId FROM UserGroup ug WHERE ug.groupId = :groupId) " +
+            "AND ts.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY ts.user.id")
+    List<MemberTimeSheetCount> countTimeSheetsByGroupMember(@Param("groupId") Integer groupId,
+                                                            @Param("startDate") LocalDate startDate,
+                                                            @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT ts.user.id AS userId, COUNT(tst) AS entries, " +
+            "SUM(CASE WHEN tst.duration > 0 THEN 1 ELSE 0 END) AS activeEntries, " +
+            "SUM(tst.duration) AS totalDuration " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts " +
+            "WHERE ts.user.id IN (SELECT ug.userId FROM UserGroup ug WHERE ug.groupId = :groupId) " +
+            "AND ts.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY ts.user.id")
+    List<MemberTotal> sumEntriesByGroupMember(@Param("groupId") Integer groupId,
+                                              @Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT ts.entryDate AS entryDate, t.id AS taskId, t.name AS taskName, t.repetition AS repetition, " +
+            "COUNT(tst) AS entries, SUM(CASE WHEN tst.duration > 0 THEN 1 ELSE 0 END) AS activeEntries, " +
+            "SUM(tst.duration) AS totalDuration " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts JOIN tst.task t " +
+            "WHERE ts.user.id IN (SELECT ug.userId FROM UserGroup ug WHERE ug.groupId = :groupId) " +
+            "AND ts.entryDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY ts.entryDate, t.id, t.name, t.repetition " +
+            "ORDER BY ts.entryDate")
+    Stream<DayTaskTotal> streamEntriesByDayAndTaskForGroup(@Param("groupId") Integer groupId,
+                                                           @Param("startDate") LocalDate startDate,
+                                                           @Param("endDate") LocalDate endDate);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT ts.entryDate AS entryDate, tst.taskId AS taskId, tst.duration AS duration, tst.completed AS completed " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts " +
+            "WHERE ts.user.id = :userId " +
+            "ORDER BY ts.entryDate")
+    Stream<EntryRow> streamEntriesByUserId(@Param("userId") Integer userId);
+
+    @Query("SELECT ts.entryDate AS entryDate, tst.taskId AS taskId, tst.duration AS duration, tst.completed AS completed " +
+            "FROM TimeSheetTask tst JOIN tst.timeSheet ts " +
+            "WHERE ts.user.id = :userId AND ts.entryDate IN :entryDates " +
+            "ORDER BY ts.entryDate")
+    List<EntryRow> findEntriesByUserIdAndEntryDates(@Param("userId") Integer userId,
+                                                    @Param("entryDates") Collection<LocalDate> entryDates);
+
+    @Query("SELECT ts.entryDate FROM TimeSheet ts WHERE ts.user.id = :userId ORDER BY ts.entryDate")
+    List<LocalDate> findTimeSheetDatesByUserId(@Param("userId") Integer userId);
+
+    @Query("SELECT ts.entryDate FROM TimeSheet ts " +
+            "WHERE ts.user.id = :userId AND ts.entryDate IN :entryDates " +
+            "ORDER BY ts.entryDate")
+    List<LocalDate> findTimeSheetDatesByUserIdAndEntryDates(@Param("userId") Integer userId,
+                                                            @Param("entryDates") Collection<LocalDate> entryDates);
+}
@@ -1,16 +1,88 @@
 package isis.projet.backend.repository;
 
 import isis.projet.backend.entity.TimeSheet;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TimeSheetRepository extends JpaRepository<TimeSheet, Integer> {
+
+    /**
+     * Résumé d'une feuille de temps pour les listes : champs de la feuille et totaux des tâches,
+     * calculés par la base sans charger les collections
+     */
+    interface TimeSheetSummaryRow {
+        Integer getId();
+        Long getVersion();
+        LocalDate getEntryDate();
+        String getIcon();
+        String getTitle();
+        LocalDate getStartDate();
+        LocalDate getEndDate();
+        String getStartTime();
+        String getEndTime();
+        Long getTaskCount();
+        Long getCompletedTaskCount();
+        Long getTotalDuration();
+    }
+
+    /**
+     * Tâche d'une feuille de temps avec son nom
+     */
+    interface TaskLineRow {
+        Integer getTimeSheetId();
+        Integer getTaskId();
+        String getTaskName();
+        Integer getDuration();
+        Boolean getCompleted();
+    }
+
+    /**
+     * Partage d'une feuille de temps (targetId : utilisateur ou groupe)
+     */
+    interface ShareRow {
+        Integer getTimeSheetId();
+        Integer getTargetId();
+        String getAccessLevel();
+    }
+
+    /**
+     * Empreinte d'une liste de feuilles : nombre, somme des versions et plus grand ID.
+     * Toute modification, création ou suppression d'une feuille de la liste change l'empreinte.
+     */
+    interface ListVersion {
+        Long getSheets();
+        Long getVersionSum();
+        Integer getMaxId();
+    }
+
+    String LIST_VERSION_SELECT = "SELECT COUNT(ts) AS sheets, COALESCE(SUM(ts.version), 0) AS versionSum, " +
+            "COALESCE(MAX(ts.id), 0) AS maxId FROM TimeSheet ts ";
+
+    String SUMMARY_SELECT = "SELECT ts.id AS id, ts.version AS version, ts.entryDate AS entryDate, ts.icon AS icon, ts.title AS title, " +
+            "ts.startDate AS startDate, ts.endDate AS endDate, ts.startTime AS startTime, ts.endTime AS endTime, " +
+            "COUNT(tst.taskId) AS taskCount, " +
+            "COALESCE(SUM(CASE WHEN tst.completed = true THEN 1 ELSE 0 END), 0) AS completedTaskCount, " +
+            "COALESCE(SUM(tst.duration), 0) AS totalDuration " +
+            "FROM TimeSheet ts LEFT JOIN ts.timeSheetTasks tst ";
+
+    String SUMMARY_GROUP_BY = " GROUP BY ts.id, ts.version, ts.entryDate, ts.icon, ts.title, ts.startDate, ts.endDate, ts.startTime, ts.endTime " +
+            "ORDER BY ts.entryDate DESC, ts.id DESC";
+
     List<TimeSheet> findByUserId(Integer userId);
 
     List<TimeSheet> findByEntryDate(LocalDate entryDate);
@@ -19,6 +91,188 @@ public interface TimeSheetRepository extends JpaRepository<TimeSheet, Integer> {
 
     List<TimeSheet> findByUserIdAndEntryDateBetween(Integer userId, LocalDate startDate, LocalDate endDate);
 
+    List<TimeSheet> findByUserIdAndEntryDateGreaterThanEqual(Integer userId, LocalDate startDate);
+
+    List<TimeSheet> findByUserIdAndEntryDateLessThanEqual(Integer userId, LocalDate endDate);
+
+    long countByUserIdAndEntryDateBetween(Integer userId, LocalDate startDate, LocalDate endDate);
+
+    @Query(LIST_VERSION_SELECT + "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate")
+    ListVersion findListVersionByUserId(@Param("userId") Integer userId,
+                                        @Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+
+    @Query(LIST_VERSION_SELECT + "WHERE ts.entryDate = :entryDate")
+    ListVersion findListVersionByEntryDate(@Param("entryDate") LocalDate entryDate);
+
+    @Query(LIST_VERSION_SELECT + "WHERE EXISTS (SELECT 1 FROM TimeSheetShareUser swu WHERE swu.timeSheetId = ts.id AND swu.userId = :userId)")
+    ListVersion findListVersionSharedWithUser(@Param("userId") Integer userId);
+
+    @Query(LIST_VERSION_SELECT + "WHERE EXISTS (SELECT 1 FROM TimeSheetShareGroup swg WHERE swg.timeSheetId = ts.id AND swg.groupId = :groupId)")
+    ListVersion findListVersionSharedWithGroup(@Param("groupId") Integer groupId);
+
+    @Query("SELECT ts.version FROM TimeSheet ts WHERE ts.id = :id")
+    Optional<Long> findVersionById(@Param("id") Integer id);
+
+    /**
+     * Droits d'un utilisateur sur une feuille de temps
+     */
+    interface SheetAccess {
+        Integer getOwnerId();
+
+        /** Propriétaire de la feuille, ou propriétaire d'un groupe avec lequel elle est partagée */
+        Boolean getEdit();
+
+        /** Propriétaire de la feuille, ou membre d'un groupe avec lequel elle est partagée */
+        Boolean getUpdateTasks();
+    }
+
+    /**
+     * Droits d'un utilisateur sur une feuille en une seule requête (EXISTS sur les partages de groupe
+     * et les appartenances), sans charger la feuille ni ses partages
+     */
+    @Query("SELECT ts.user.id AS ownerId, " +
+            "CASE WHEN ts.user.id = :userId OR EXISTS (SELECT 1 FROM TimeSheetShareGroup sg, UserGroup ug " +
+            "WHERE sg.timeSheetId = ts.id AND ug.groupId = sg.groupId AND ug.userId = :userId AND ug.role = 'OWNER') " +
+            "THEN true ELSE false END AS edit, " +
+            "CASE WHEN ts.user.id = :userId OR EXISTS (SELECT 1 FROM TimeSheetShareGroup sg, UserGroup ug " +
+            "WHERE sg.timeSheetId = ts.id AND ug.groupId = sg.groupId AND ug.userId = :userId) " +
+            "THEN true ELSE false END AS updateTasks " +
+            "FROM TimeSheet ts WHERE ts.id = :timeSheetId")
+    Optional<SheetAccess> findAccess(@Param("timeSheetId") Integer timeSheetId, @Param("userId") Integer userId);
+
+    /**
+     * Utilisateurs ayant accès à une feuille par partage, directement ou comme membres d'un groupe
+     * (destinataires du flux des modifications, en plus du propriétaire)
+     */
+    @Query("SELECT su.userId FROM TimeSheetShareUser su WHERE su.timeSheetId = :timeSheetId " +
+            "UNION SELECT ug.userId FROM UserGroup ug, TimeSheetShareGroup sg " +
+            "WHERE sg.timeSheetId = :timeSheetId AND ug.groupId = sg.groupId")
+    List<Integer> findShareAudienceUserIds(@Param("timeSheetId") Integer timeSheetId);
+
+    /**
+     * Incrémente la version des feuilles qui contiennent une tâche (nom de tâche modifié ou tâche supprimée)
+     */
+    @Modifying
+    @Query("UPDATE TimeSheet ts SET ts.version = ts.version + 1 " +
+           "WHERE ts.id IN (SELECT tst.timeSheetId FROM TimeSheetTask tst WHERE tst.taskId = :taskId)")
+    int incrementVersionsByTaskId(@Param("taskId") Integer taskId);
+
+    /**
+     * Incrémente la version de plusieurs feuilles (partages modifiés en masse). Le contexte de persistance
+     * est vidé : les feuilles déjà chargées y auraient une version périmée.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TimeSheet ts SET ts.version = ts.version + 1 WHERE ts.id IN :ids")
+    int incrementVersions(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Nombre de feuilles parmi ids que l'utilisateur peut modifier (mêmes règles que findAccess)
+     */
+    @Query("SELECT COUNT(ts) FROM TimeSheet ts WHERE ts.id IN :ids AND (ts.user.id = :userId OR EXISTS (" +
+            "SELECT 1 FROM TimeSheetShareGroup sg, UserGroup ug WHERE sg.timeSheetId = ts.id " +
+            "AND ug.groupId = sg.groupId AND ug.userId = :userId AND ug.role = 'OWNER'))")
+    long countEditable(@Param("ids") Collection<Integer> ids, @Param("userId") Integer userId);
+
+    @Query("SELECT COUNT(ts) FROM TimeSheet ts WHERE ts.id IN :ids AND ts.user.id = :userId")
+    long countOwned(@Param("ids") Collection<Integer> ids, @Param("userId") Integer userId);
+
+    @Query(SUMMARY_SELECT + "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findSummariesByUserId(@Param("userId") Integer userId,
+                                                    @Param("startDate") LocalDate startDate,
+                                                    @Param("endDate") LocalDate endDate);
+
+    /**
+     * Première page des feuilles d'un utilisateur sur une période, de la plus récente à la plus ancienne
+     */
+    @Query(SUMMARY_SELECT + "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findFirstPageByUserId(@Param("userId") Integer userId,
+                                                    @Param("startDate") LocalDate startDate,
+                                                    @Param("endDate") LocalDate endDate,
+                                                    Limit limit);
+
+    /**
+     * Page suivante (pagination par clé) : feuilles strictement après la position (afterDate, afterId)
+     * dans l'ordre (entryDate, id) décroissant, sans OFFSET
+     */
+    @Query(SUMMARY_SELECT + "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate " +
+           "AND (ts.entryDate < :afterDate OR (ts.entryDate = :afterDate AND ts.id < :afterId))" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findPageByUserIdAfter(@Param("userId") Integer userId,
+                                                    @Param("startDate") LocalDate startDate,
+                                                    @Param("endDate") LocalDate endDate,
+                                                    @Param("afterDate") LocalDate afterDate,
+                                                    @Param("afterId") Integer afterId,
+                                                    Limit limit);
+
+    @Query(SUMMARY_SELECT + "WHERE ts.entryDate = :entryDate" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findSummariesByEntryDate(@Param("entryDate") LocalDate entryDate);
+
+    @Query(SUMMARY_SELECT + "WHERE EXISTS (SELECT 1 FROM TimeSheetShareUser swu WHERE swu.timeSheetId = ts.id AND swu.userId = :userId)" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findSummariesSharedWithUser(@Param("userId") Integer userId);
+
+    @Query(SUMMARY_SELECT + "WHERE EXISTS (SELECT 1 FROM TimeSheetShareGroup swg WHERE swg.timeSheetId = ts.id AND swg.groupId = :groupId)" + SUMMARY_GROUP_BY)
+    List<TimeSheetSummaryRow> findSummariesSharedWithGroup(@Param("groupId") Integer groupId);
+
+    @Query("SELECT tst.timeSheetId AS timeSheetId, tst.taskId AS taskId, t.name AS taskName, " +
+           "tst.duration AS duration, tst.completed AS completed " +
+           "FROM TimeSheetTask tst JOIN tst.task t WHERE tst.timeSheetId IN :timeSheetIds")
+    List<TaskLineRow> findTaskLinesByTimeSheetIds(@Param("timeSheetIds") Collection<Integer> timeSheetIds);
+
+    @Query("SELECT s.timeSheetId AS timeSheetId, s.userId AS targetId, s.accessLevel AS accessLevel " +
+           "FROM TimeSheetShareUser s WHERE s.timeSheetId IN :timeSheetIds")
+    List<ShareRow> findUserSharesByTimeSheetIds(@Param("timeSheetIds") Collection<Integer> timeSheetIds);
+
+    @Query("SELECT s.timeSheetId AS timeSheetId, s.groupId AS targetId, s.accessLevel AS accessLevel " +
+           "FROM TimeSheetShareGroup s WHERE s.timeSheetId IN :timeSheetIds")
+    List<ShareRow> findGroupSharesByTimeSheetIds(@Param("timeSheetIds") Collection<Integer> timeSheetIds);
+
+    /**
+     * Ligne d'export : une tâche d'une feuille de temps
+     */
+    interface ExportRow {
+        Integer getTimeSheetId();
+        LocalDate getEntryDate();
+        String getIcon();
+        Integer getUserId();
+        Integer getTaskId();
+        String getTaskName();
+        Integer getDuration();
+        LocalDate getStartDate();
+        LocalDate getEndDate();
+    }
+
+    /**
+     * Lignes d'export d'un utilisateur lues au fil d'un curseur (une requête jointe, lue par blocs de 500 lignes).
+     * Le flux doit être consommé puis fermé dans une transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT ts.id AS timeSheetId, ts.entryDate AS entryDate, ts.icon AS icon, u.id AS userId, " +
+           "tst.taskId AS taskId, t.name AS taskName, tst.duration AS duration, " +
+           "ts.startDate AS startDate, ts.endDate AS endDate " +
+           "FROM TimeSheetTask tst JOIN tst.timeSheet ts JOIN ts.user u LEFT JOIN tst.task t " +
+           "WHERE u.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate " +
+           "ORDER BY ts.entryDate, ts.id, tst.taskId")
+    Stream<ExportRow> streamExportRows(@Param("userId") Integer userId,
+                                       @Param("startDate") LocalDate startDate,
+                                       @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT COUNT(tst) FROM TimeSheetTask tst JOIN tst.timeSheet ts " +
+           "WHERE ts.user.id = :userId AND ts.entryDate BETWEEN :startDate AND :endDate")
+    long countExportRows(@Param("userId") Integer userId,
+                         @Param("startDate") LocalDate startDate,
+                         @Param("endDate") LocalDate endDate);
+
+    /**
+     * Feuille avec son propriétaire et ses partages de groupe (plan des vérifications de droits)
+     */
+    @EntityGraph(TimeSheet.GRAPH_AUTHORIZATION)
+    @Query("SELECT ts FROM TimeSheet ts WHERE ts.id = :id")
+    Optional<TimeSheet> findForAuthorizationById(@Param("id") Integer id);
+
     @Query("SELECT ts FROM TimeSheet ts JOIN ts.sharedWithUsers swu WHERE swu.userId = :userId")
     List<TimeSheet> findSharedWithUser(@Param("userId") Integer userId);
 
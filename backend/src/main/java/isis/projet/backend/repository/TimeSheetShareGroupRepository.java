@@ -3,12 +3,50 @@ package isis.projet.backend.repository;
 import isis.projet.backend.entity.TimeSheetShareGroup;
 import isis.projet.backend.entity.TimeSheetShareGroupId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TimeSheetShareGroupRepository extends JpaRepository<TimeSheetShareGroup, TimeSheetShareGroupId> {
     List<TimeSheetShareGroup> findByGroupId(Integer groupId);
     List<TimeSheetShareGroup> findByTimeSheetId(Integer timeSheetId);
+
+    /**
+     * Met à jour le niveau d'accès des partages existants entre des feuilles et des groupes
+     * (première moitié de l'upsert ensembliste, suivie de insertMissing)
+     * @return Nombre de partages mis à jour
+     */
+    @Modifying
+    @Query("UPDATE TimeSheetShareGroup s SET s.accessLevel = :accessLevel " +
+            "WHERE s.timeSheetId IN :timeSheetIds AND s.groupId IN :targetIds AND s.accessLevel <> :accessLevel")
+    int updateAccessLevel(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                          @Param("targetIds") Collection<Integer> targetIds,
+                          @Param("accessLevel") String accessLevel);
+
+    /**
+     * Crée en une instruction les partages manquants entre des feuilles et des groupes existants
+     * @return Nombre de partages créés
+     */
+    @Modifying
+    @Query("INSERT INTO TimeSheetShareGroup (timeSheetId, groupId, accessLevel) " +
+            "SELECT ts.id, g.id, :accessLevel FROM TimeSheet ts, Group g " +
+            "WHERE ts.id IN :timeSheetIds AND g.id IN :targetIds " +
+            "AND NOT EXISTS (SELECT 1 FROM TimeSheetShareGroup s WHERE s.timeSheetId = ts.id AND s.groupId = g.id)")
+    int insertMissing(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                      @Param("targetIds") Collection<Integer> targetIds,
+                      @Param("accessLevel") String accessLevel);
+
+    /**
+     * Supprime en une instruction les partages entre des feuilles et des groupes
+     * @return Nombre de partages supprimés
+     */
+    @Modifying
+    @Query("DELETE FROM TimeSheetShareGroup s WHERE s.timeSheetId IN :timeSheetIds AND s.groupId IN :targetIds")
+    int deleteShares(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                     @Param("targetIds") Collection<Integer> targetIds);
 }
\ No newline at end of file
@@ -3,12 +3,50 @@ package isis.projet.backend.repository;
 import isis.projet.backend.entity.TimeSheetShareUser;
 import isis.projet.backend.entity.TimeSheetShareUserId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TimeSheetShareUserRepository extends JpaRepository<TimeSheetShareUser, TimeSheetShareUserId> {
     List<TimeSheetShareUser> findByUserId(Integer userId);
     List<TimeSheetShareUser> findByTimeSheetId(Integer timeSheetId);
+
+    /**
+     * Met à jour le niveau d'accès des partages existants entre des feuilles et des utilisateurs
+     * (première moitié de l'upsert ensembliste, suivie de insertMissing)
+     * @return Nombre de partages mis à jour
+     */
+    @Modifying
+    @Query("UPDATE TimeSheetShareUser s SET s.accessLevel = :accessLevel " +
+            "WHERE s.timeSheetId IN :timeSheetIds AND s.userId IN :targetIds AND s.accessLevel <> :accessLevel")
+    int updateAccessLevel(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                          @Param("targetIds") Collection<Integer> targetIds,
+                          @Param("accessLevel") String accessLevel);
+
+    /**
+     * Crée en une instruction les partages manquants entre des feuilles et des utilisateurs existants
+     * @return Nombre de partages créés
+     */
+    @Modifying
+    @Query("INSERT INTO TimeSheetShareUser (timeSheetId, userId, accessLevel) " +
+            "SELECT ts.id, u.id, :accessLevel FROM TimeSheet ts, User u " +
+            "WHERE ts.id IN :timeSheetIds AND u.id IN :targetIds " +
+            "AND NOT EXISTS (SELECT 1 FROM TimeSheetShareUser s WHERE s.timeSheetId = ts.id AND s.userId = u.id)")
+    int insertMissing(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                      @Param("targetIds") Collection<Integer> targetIds,
+                      @Param("accessLevel") String accessLevel);
+
+    /**
+     * Supprime en une instruction les partages entre des feuilles et des utilisateurs
+     * @return Nombre de partages supprimés
+     */
+    @Modifying
+    @Query("DELETE FROM TimeSheetShareUser s WHERE s.timeSheetId IN :timeSheetIds AND s.userId IN :targetIds")
+    int deleteShares(@Param("timeSheetIds") Collection<Integer> timeSheetIds,
+                     @Param("targetIds") Collection<Integer> targetIds);
 }
\ No newline at end of file
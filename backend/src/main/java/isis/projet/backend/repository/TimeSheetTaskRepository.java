@@ -3,8 +3,12 @@ package isis.projet.backend.repository;
 import isis.projet.backend.entity.TimeSheetTask;
 import isis.projet.backend.entity.TimeSheetTaskId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +16,16 @@ public interface TimeSheetTaskRepository extends JpaRepository<TimeSheetTask, Ti
     List<TimeSheetTask> findByTaskId(Integer taskId);
 
     List<TimeSheetTask> findByTimeSheetId(Integer timeSheetId);
+
+    List<TimeSheetTask> findByTimeSheetIdIn(Collection<Integer> timeSheetIds);
+
+    /**
+     * Ajoute une durée à une tâche de feuille de temps sans la relire (incrément atomique)
+     * @return 0 si l'association n'existe pas ou si la durée deviendrait négative
+     */
+    @Modifying
+    @Query("UPDATE TimeSheetTask tst SET tst.duration = tst.duration + :delta, tst.version = tst.version + 1 " +
+            "WHERE tst.timeSheetId = :timeSheetId AND tst.taskId = :taskId AND tst.duration + :delta >= 0")
+    int incrementDuration(@Param("timeSheetId") Integer timeSheetId, @Param("taskId") Integer taskId,
+                          @Param("delta") int delta);
 }
\ No newline at end of file
@@ -3,8 +3,11 @@ package isis.projet.backend.repository;
 import isis.projet.backend.entity.UserGroup;
 import isis.projet.backend.entity.UserGroupId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +15,11 @@ public interface UserGroupRepository extends JpaRepository<UserGroup, UserGroupI
     List<UserGroup> findByUserId(Integer userId);
     List<UserGroup> findByGroupId(Integer groupId);
     List<UserGroup> findByUserIdAndRole(Integer userId, String role);
+
+    boolean existsByUserIdAndRoleAndGroupIdIn(Integer userId, String role, Collection<Integer> groupIds);
+
+    long countByUserIdAndRoleAndGroupIdIn(Integer userId, String role, Collection<Integer> groupIds);
+
+    @Query("SELECT ug FROM UserGroup ug JOIN FETCH ug.user JOIN FETCH ug.group WHERE ug.groupId = :groupId")
+    List<UserGroup> findByGroupIdWithUser(@Param("groupId") Integer groupId);
 }
\ No newline at end of file
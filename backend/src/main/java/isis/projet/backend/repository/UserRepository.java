@@ -15,4 +15,6 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     boolean existsByPseudo(String pseudo);
     boolean existsByEmail(String email);
     List<User> findAllByIdIn(Collection<Integer> ids);
+
+    long countByIdIn(Collection<Integer> ids);
 }
\ No newline at end of file
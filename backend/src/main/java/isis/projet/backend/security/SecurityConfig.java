@@ -2,6 +2,7 @@ package isis.projet.backend.security;
 
 import isis.projet.backend.security.jwt.JwtAuthenticationEntryPoint;
 import isis.projet.backend.security.jwt.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -57,6 +58,8 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Envois asynchrones (flux SSE) : la requête initiale a déjà été authentifiée
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Permettre l'accès public aux pages principales
                         .requestMatchers("/", "/index.html", "/static/**",
                                 "/favicon.ico", "/login", "/register").permitAll()
@@ -1,17 +1,55 @@
 package isis.projet.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import isis.projet.backend.entity.TimeSheet;
 import isis.projet.backend.repository.TimeSheetRepository;
+import isis.projet.backend.repository.UserGroupRepository;
+import isis.projet.backend.security.jwt.JwtUserDetails;
+import isis.projet.backend.service.TimeSheetChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Droits sur les feuilles de temps, utilisés par @PreAuthorize dans les contrôleurs
+ * (ex: "@timesheetSecurityService.canEdit(#timeSheetId, authentication)").
+ * Les droits d'un utilisateur sur une feuille sont lus en une requête (TimeSheetRepository.findAccess),
+ * mémorisés pour la requête HTTP en cours et, si app.security.timesheet-access.ttl est positif,
+ * pendant cette durée (un retrait de groupe est alors pris en compte au plus tard après ce délai).
+ */
 @Component("timesheetSecurityService")
 public class TimeSheetSecurityService {
 
+    private static final String REQUEST_ATTRIBUTE = TimeSheetSecurityService.class.getName() + ".access";
+
+    private record Key(Integer timeSheetId, Integer userId) {
+    }
+
     @Autowired
     private TimeSheetRepository timeSheetRepository;
 
+    @Autowired
+    private UserGroupRepository userGroupRepository;
+
+    private final Cache<Key, TimeSheetRepository.SheetAccess> cache;
+
+    public TimeSheetSecurityService(@Value("${app.security.timesheet-access.ttl:PT0S}") Duration ttl,
+                                    @Value("${app.security.timesheet-access.max-size:10000}") long maxSize) {
+        this.cache = ttl.isZero() || ttl.isNegative() ? null : Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
     /**
      * Returns true if the current user (by email) is the owner of the timesheet.
      */
@@ -20,4 +58,119 @@ public class TimeSheetSecurityService {
         if (timesheet == null) return false;
         return currentUser.getUsername().equals(timesheet.getUser().getEmail());
     }
+
+    /**
+     * Vérifie si l'utilisateur peut modifier une feuille (propriétés, tâches, partages, suppression)
+     * @param timeSheetId ID de la feuille de temps
+     * @param authentication Informations d'authentification
+     * @return true si l'utilisateur est propriétaire de la feuille ou d'un groupe avec lequel elle est partagée
+     */
+    public boolean canEdit(Integer timeSheetId, Authentication authentication) {
+        return access(timeSheetId, authentication).map(access -> access.getEdit()).orElse(false);
+    }
+
+    /**
+     * Vérifie si l'utilisateur peut saisir du temps sur une feuille (durée et complétion des tâches)
+     * @param timeSheetId ID de la feuille de temps
+     * @param authentication Informations d'authentification
+     * @return true si l'utilisateur est propriétaire de la feuille ou membre d'un groupe avec lequel elle est partagée
+     */
+    public boolean canUpdateTasks(Integer timeSheetId, Authentication authentication) {
+        return access(timeSheetId, authentication).map(access -> access.getUpdateTasks()).orElse(false);
+    }
+
+    /**
+     * Vérifie en une requête que l'utilisateur peut modifier toutes les feuilles d'un lot
+     * @param timeSheetIds IDs des feuilles de temps
+     * @param authentication Informations d'authentification
+     * @return true si chaque feuille existe et est modifiable par l'utilisateur
+     */
+    public boolean canEditAll(Collection<Integer> timeSheetIds, Authentication authentication) {
+        Set<Integer> ids = new HashSet<>(timeSheetIds);
+        return userIdOf(authentication)
+                .map(userId -> timeSheetRepository.countEditable(ids, userId) == ids.size())
+                .orElse(false);
+    }
+
+    /**
+     * Vérifie qu'un lot de feuilles peut être partagé avec des groupes : comme pour un partage unitaire,
+     * l'utilisateur doit être propriétaire de chaque feuille et de chaque groupe
+     * @param timeSheetIds IDs des feuilles de temps
+     * @param groupIds IDs des groupes
+     * @param authentication Informations d'authentification
+     * @return true si le partage est autorisé
+     */
+    public boolean canShareWithGroups(Collection<Integer> timeSheetIds, Collection<Integer> groupIds,
+                                      Authentication authentication) {
+        Set<Integer> sheets = new HashSet<>(timeSheetIds);
+        Set<Integer> groups = new HashSet<>(groupIds);
+        return userIdOf(authentication)
+                .map(userId -> timeSheetRepository.countOwned(sheets, userId) == sheets.size()
+                        && userGroupRepository.countByUserIdAndRoleAndGroupIdIn(userId, "OWNER", groups) == groups.size())
+                .orElse(false);
+    }
+
+    private Optional<Integer> userIdOf(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof JwtUserDetails userDetails)) {
+            return Optional.empty();
+        }
+        return Optional.of(userDetails.getId());
+    }
+
+    /**
+     * Droits de l'utilisateur connecté sur une feuille
+     * @param timeSheetId ID de la feuille de temps
+     * @param authentication Informations d'authentification
+     * @return Droits et propriétaire de la feuille, vide si la feuille n'existe pas
+     */
+    public Optional<TimeSheetRepository.SheetAccess> access(Integer timeSheetId, Authentication authentication) {
+        if (timeSheetId == null) {
+            return Optional.empty();
+        }
+        return userIdOf(authentication).flatMap(userId -> access(timeSheetId, userId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<TimeSheetRepository.SheetAccess> access(Integer timeSheetId, Integer userId) {
+        Key key = new Key(timeSheetId, userId);
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        Map<Key, Optional<TimeSheetRepository.SheetAccess>> memo = null;
+        if (request != null) {
+            memo = (Map<Key, Optional<TimeSheetRepository.SheetAccess>>)
+                    request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (memo == null) {
+                memo = new HashMap<>();
+                request.setAttribute(REQUEST_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+            }
+            Optional<TimeSheetRepository.SheetAccess> known = memo.get(key);
+            if (known != null) {
+                return known;
+            }
+        }
+
+        TimeSheetRepository.SheetAccess cached = cache != null ? cache.getIfPresent(key) : null;
+        Optional<TimeSheetRepository.SheetAccess> result = cached != null
+                ? Optional.of(cached)
+                : timeSheetRepository.findAccess(timeSheetId, userId);
+        if (cache != null && cached == null) {
+            result.ifPresent(access -> cache.put(key, access));
+        }
+        if (memo != null) {
+            memo.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Oublie les droits mémorisés d'une feuille supprimée ou dont les partages ont changé
+     * @param event Modification de feuille de temps
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTimeSheetChanged(TimeSheetChangedEvent event) {
+        if (cache != null && (event.type() == TimeSheetChangedEvent.Type.SHARED
+                || event.type() == TimeSheetChangedEvent.Type.DELETED)) {
+            cache.asMap().keySet().removeIf(key -> key.timeSheetId().equals(event.timeSheetId()));
+        }
+    }
 }
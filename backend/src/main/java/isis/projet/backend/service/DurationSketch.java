@@ -0,0 +1,97 @@
+package isis.projet.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Sketch de distribution des durées à erreur relative bornée (type DDSketch).
+ * Les durées sont rangées dans des intervalles logarithmiques de raison GAMMA : un quantile estimé
+ * est à moins de RELATIVE_ACCURACY (2 %) de la valeur exacte. Deux sketches se fusionnent en sommant
+ * leurs compteurs, ce qui permet de stocker un petit sketch par utilisateur, tâche et jour
+ * (table DURATION_SKETCH) et d'obtenir les quantiles d'une période sans trier les entrées.
+ * L'intervalle 0 contient les durées nulles ; l'intervalle b >= 1 contient ]GAMMA^(b-2), GAMMA^(b-1)].
+ */
+final class DurationSketch {
+
+    static final double RELATIVE_ACCURACY = 0.02;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private long[] counts = new long[64];
+    private long count;
+
+    /**
+     * Intervalle d'une durée
+     * @param duration Durée en minutes
+     * @return Indice de l'intervalle
+     */
+    static int bucketOf(Integer duration) {
+        if (duration == null || duration <= 0) {
+            return 0;
+        }
+        return (int) Math.ceil(Math.log(duration) / LOG_GAMMA) + 1;
+    }
+
+    static double lowerBound(int bucket) {
+        return bucket == 0 ? 0 : Math.pow(GAMMA, bucket - 2);
+    }
+
+    static double upperBound(int bucket) {
+        return bucket == 0 ? 0 : Math.pow(GAMMA, bucket - 1);
+    }
+
+    /**
+     * Valeur représentative d'un intervalle (erreur relative <= RELATIVE_ACCURACY)
+     */
+    static double valueOf(int bucket) {
+        return bucket == 0 ? 0 : 2 * Math.pow(GAMMA, bucket - 1) / (GAMMA + 1);
+    }
+
+    void add(int bucket, long entries) {
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length * 2));
+        }
+        counts[bucket] += entries;
+        count += entries;
+    }
+
+    void merge(DurationSketch other) {
+        for (int bucket = 0; bucket < other.counts.length; bucket++) {
+            if (other.counts[bucket] != 0) {
+                add(bucket, other.counts[bucket]);
+            }
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getCount(int bucket) {
+        return bucket < counts.length ? counts[bucket] : 0;
+    }
+
+    int getBucketLimit() {
+        return counts.length;
+    }
+
+    /**
+     * Quantile estimé
+     * @param quantile Quantile entre 0 et 1 (0.5 pour la médiane)
+     * @return Durée estimée en minutes, null si le sketch est vide
+     */
+    Double quantile(double quantile) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen > rank) {
+                return valueOf(bucket);
+            }
+        }
+        return valueOf(counts.length - 1);
+    }
+}
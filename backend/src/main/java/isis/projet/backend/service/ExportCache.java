@@ -0,0 +1,208 @@
+package isis.projet.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache disque des exports déjà générés. La clé est une empreinte de (utilisateur, format, période,
+ * version des données) : une modification des feuilles change la version, donc la clé, et les anciens
+ * fichiers ne sont plus jamais lus ; ils sont évincés par ordre d'utilisation dès que la taille totale
+ * dépasse app.export.cache.max-size. Le contenu est écrit en même temps dans la réponse et dans un
+ * fichier temporaire, publié seulement si l'export s'est terminé sans erreur.
+ * Le répertoire est vidé au démarrage (le format des fichiers a pu changer entre deux versions).
+ */
+@Component
+public class ExportCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportCache.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Écriture d'un export dans un flux
+     */
+    @FunctionalInterface
+    public interface ExportWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private record Entry(Path file, long size) {
+    }
+
+    // Ordre d'accès : le premier élément est le moins récemment utilisé
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Path directory;
+    private final long maxBytes;
+    private long totalBytes;
+
+    public ExportCache(@Value("${app.export.cache.max-size:512MB}") DataSize maxSize,
+                       @Value("${app.export.cache.dir:}") String directory) throws IOException {
+        this.maxBytes = maxSize.toBytes();
+        this.directory = directory.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "timetracking-export-cache")
+                : Path.of(directory);
+        if (isEnabled()) {
+            Files.createDirectories(this.directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indique si le cache est actif (app.export.cache.max-size positif)
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Clé d'un export
+     * @param userId ID de l'utilisateur
+     * @param format Format de l'export
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param dataVersion Version des données exportées (change à chaque modification)
+     * @return Empreinte SHA-256 en hexadécimal
+     */
+    public String keyOf(Integer userId, ExportFormat format, LocalDate startDate, LocalDate endDate, String dataVersion) {
+        String source = userId + "|" + format + "|" + startDate + "|" + endDate + "|" + dataVersion;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Fichier d'un export déjà généré
+     * @param key Clé de l'export
+     * @return Fichier, vide s'il n'est pas (ou plus) en cache
+     */
+    public Optional<Path> get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (!Files.exists(entry.file())) {
+                entries.remove(key);
+                totalBytes -= entry.size();
+                return Optional.empty();
+            }
+            return Optional.of(entry.file());
+        }
+    }
+
+    /**
+     * Génère un export dans un flux et, s'il se termine sans erreur, le conserve dans le cache
+     * @param key Clé de l'export
+     * @param format Format de l'export
+     * @param out Flux de la réponse (non fermé)
+     * @param writer Génération de l'export
+     * @throws IOException si l'écriture échoue (le fichier temporaire est alors supprimé)
+     */
+    public void write(String key, ExportFormat format, OutputStream out, ExportWriter writer) throws IOException {
+        Path temp = directory.resolve(key + "-" + UUID.randomUUID() + TEMP_SUFFIX);
+        boolean published = false;
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp), FILE_BUFFER_SIZE)) {
+                writer.write(new TeeOutputStream(out, file));
+            }
+            Path target = directory.resolve(key + "." + format.getExtension());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            published = true;
+            put(key, target, Files.size(target));
+        } finally {
+            if (!published) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private void put(String key, Path file, long size) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(file, size));
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            totalBytes += size;
+
+            // Éviction des exports les moins récemment utilisés (le dernier ajouté est toujours conservé)
+            Iterator<Map.Entry<String, Entry>> oldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1) {
+                Entry evicted = oldest.next().getValue();
+                oldest.remove();
+                totalBytes -= evicted.size();
+                try {
+                    Files.deleteIfExists(evicted.file());
+                } catch (IOException e) {
+                    logger.warn("Impossible de supprimer l'export en cache {}", evicted.file(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copie chaque écriture dans la réponse et dans le fichier du cache
+     */
+    private static final class TeeOutputStream extends FilterOutputStream {
+
+        private final OutputStream copy;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            copy.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Les deux flux sont fermés par leurs propriétaires
+            flush();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package isis.projet.backend.service;
+
+import java.util.Locale;
+
+/**
+ * Formats des exports de feuilles de temps
+ */
+public enum ExportFormat {
+    CSV("csv", "text/csv;charset=UTF-8"),
+    PDF("pdf", "application/pdf"),
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    NDJSON_GZ("ndjson.gz", "application/gzip");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Format correspondant à un nom reçu par l'API (insensible à la casse)
+     * @param name Nom ou extension du format (ex: "csv", "ndjson.gz")
+     * @return Format d'export
+     */
+    public static ExportFormat fromName(String name) {
+        if (name == null) {
+            throw new RuntimeException("Le format d'export est obligatoire");
+        }
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.extension.equals(normalized) || format.name().equalsIgnoreCase(normalized)) {
+                return format;
+            }
+        }
+        throw new RuntimeException("Format d'export inconnu: " + name);
+    }
+}
@@ -0,0 +1,296 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.ExportDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Exports asynchrones : la génération ne bloque plus un thread de Tomcat.
+ * Les tâches sont exécutées par un nombre fixe de threads avec une file bornée, et chaque utilisateur
+ * a un nombre limité d'exports en attente ou en cours. Le résultat est écrit dans un fichier temporaire,
+ * téléchargeable jusqu'à l'expiration de la tâche (app.export.ttl après sa fin).
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    private static final String FILE_PREFIX = "export-";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * Fichier d'un export terminé
+     * @param path Chemin du fichier temporaire
+     * @param format Format de l'export
+     * @param fileName Nom proposé au téléchargement
+     */
+    public record ExportFile(Path path, ExportFormat format, String fileName) {
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Integer userId;
+        final ExportFormat format;
+        final LocalDate startDate;
+        final LocalDate endDate;
+        final Instant createdAt = Instant.now();
+        volatile Status status = Status.QUEUED;
+        volatile long rowsWritten;
+        volatile long totalRows = -1;
+        volatile long size;
+        volatile String error;
+        volatile Path file;
+        volatile Instant completedAt;
+        volatile boolean cancelled;
+        volatile Future<?> future;
+
+        Job(Integer userId, ExportFormat format, LocalDate startDate, LocalDate endDate) {
+            this.userId = userId;
+            this.format = format;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        boolean isActive() {
+            return status == Status.QUEUED || status == Status.RUNNING;
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final TimeSheetService timeSheetService;
+    private final ThreadPoolExecutor executor;
+    private final Path spoolDirectory;
+    private final Duration ttl;
+    private final int maxPerUser;
+
+    public ExportJobService(TimeSheetService timeSheetService,
+                            @Value("${app.export.workers:2}") int workers,
+                            @Value("${app.export.queue-capacity:20}") int queueCapacity,
+                            @Value("${app.export.max-per-user:2}") int maxPerUser,
+                            @Value("${app.export.ttl:PT1H}") Duration ttl,
+                            @Value("${app.export.spool-dir:}") String spoolDir) throws IOException {
+        this.timeSheetService = timeSheetService;
+        this.maxPerUser = maxPerUser;
+        this.ttl = ttl;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("export-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.spoolDirectory = spoolDir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "timetracking-exports")
+                : Path.of(spoolDir);
+        Files.createDirectories(spoolDirectory);
+        // Fichiers laissés par une exécution précédente : plus aucune tâche ne les référence
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spoolDirectory, FILE_PREFIX + "*")) {
+            for (Path file : leftovers) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Crée une tâche d'export pour l'utilisateur
+     * @param userId ID de l'utilisateur
+     * @param request Format et période de l'export
+     * @return État initial de la tâche
+     */
+    public ExportDTO.ExportJobStatus submit(Integer userId, ExportDTO.ExportRequest request) {
+        ExportFormat format = ExportFormat.fromName(request.getFormat());
+        if (request.getStartDate() != null && request.getEndDate() != null
+                && request.getStartDate().isAfter(request.getEndDate())) {
+            throw new RuntimeException("La date de début doit précéder la date de fin");
+        }
+
+        Job job = new Job(userId, format, request.getStartDate(), request.getEndDate());
+        synchronized (jobs) {
+            long active = jobs.values().stream()
+                    .filter(existing -> existing.userId.equals(userId) && existing.isActive())
+                    .count();
+            if (active >= maxPerUser) {
+                throw new RuntimeException("Vous avez déjà " + active + " export(s) en cours, réessayez plus tard");
+            }
+            jobs.put(job.id, job);
+            try {
+                job.future = executor.submit(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                throw new RuntimeException("Trop d'exports en attente, réessayez plus tard");
+            }
+        }
+        return toStatus(job);
+    }
+
+    /**
+     * État d'une tâche d'export de l'utilisateur
+     * @param jobId ID de la tâche
+     * @param userId ID de l'utilisateur
+     * @return État de la tâche, vide si elle n'existe pas (ou plus) ou appartient à un autre utilisateur
+     */
+    public Optional<ExportDTO.ExportJobStatus> getStatus(String jobId, Integer userId) {
+        return findJob(jobId, userId).map(this::toStatus);
+    }
+
+    /**
+     * Fichier d'un export terminé
+     * @param jobId ID de la tâche
+     * @param userId ID de l'utilisateur
+     * @return Fichier de l'export, vide si la tâche n'existe pas (ou plus)
+     */
+    public Optional<ExportFile> getFile(String jobId, Integer userId) {
+        return findJob(jobId, userId).map(job -> {
+            Path file = job.file;
+            if (job.status != Status.DONE || file == null) {
+                throw new RuntimeException(job.status == Status.FAILED
+                        ? "L'export a échoué: " + job.error
+                        : "L'export n'est pas encore terminé");
+            }
+            return new ExportFile(file, job.format, "timesheets." + job.format.getExtension());
+        });
+    }
+
+    /**
+     * Annule une tâche d'export (ou oublie une tâche terminée) et supprime son fichier
+     * @param jobId ID de la tâche
+     * @param userId ID de l'utilisateur
+     * @return true si la tâche existait
+     */
+    public boolean cancel(String jobId, Integer userId) {
+        Optional<Job> found = findJob(jobId, userId);
+        found.ifPresent(job -> {
+            jobs.remove(job.id);
+            job.cancelled = true;
+            Future<?> future = job.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+            deleteQuietly(job.file);
+        });
+        return found.isPresent();
+    }
+
+    private Optional<Job> findJob(String jobId, Integer userId) {
+        Job job = jobId != null ? jobs.get(jobId) : null;
+        return job != null && job.userId.equals(userId) ? Optional.of(job) : Optional.empty();
+    }
+
+    private void run(Job job) {
+        if (job.cancelled) {
+            return;
+        }
+        job.status = Status.RUNNING;
+        Path file = null;
+        try {
+            job.totalRows = timeSheetService.countExportRows(job.userId, job.startDate, job.endDate);
+            file = Files.createTempFile(spoolDirectory, FILE_PREFIX, "." + job.format.getExtension());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), FILE_BUFFER_SIZE)) {
+                timeSheetService.writeExport(job.format, job.userId, job.startDate, job.endDate, out, rows -> {
+                    if (job.cancelled) {
+                        throw new CancellationException("Export annulé");
+                    }
+                    job.rowsWritten = rows;
+                });
+            }
+            job.size = Files.size(file);
+            job.file = file;
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            deleteQuietly(file);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            if (!job.cancelled) {
+                logger.error("Échec de l'export {}", job.id, e);
+            }
+        } finally {
+            job.completedAt = Instant.now();
+            if (job.cancelled) {
+                // Annulée pendant l'écriture : le fichier ne sera jamais téléchargé
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private ExportDTO.ExportJobStatus toStatus(Job job) {
+        long total = job.totalRows;
+        int progress;
+        if (job.status == Status.DONE) {
+            progress = 100;
+        } else if (total > 0) {
+            progress = (int) Math.min(99, job.rowsWritten * 100 / total);
+        } else {
+            progress = 0;
+        }
+        Instant completedAt = job.completedAt;
+        return ExportDTO.ExportJobStatus.builder()
+                .id(job.id)
+                .format(job.format.getExtension())
+                .status(job.status.name())
+                .progress(progress)
+                .rowsWritten(job.rowsWritten)
+                .totalRows(total >= 0 ? total : null)
+                .size(job.status == Status.DONE ? job.size : null)
+                .error(job.error)
+                .createdAt(job.createdAt)
+                .completedAt(completedAt)
+                .expiresAt(completedAt != null ? completedAt.plus(ttl) : null)
+                .build();
+    }
+
+    /**
+     * Supprime les tâches terminées depuis plus de app.export.ttl et leurs fichiers
+     */
+    @Scheduled(fixedDelayString = "${app.export.cleanup-interval:PT1M}")
+    public void cleanup() {
+        Instant limit = Instant.now().minus(ttl);
+        jobs.values().removeIf(job -> {
+            Instant completedAt = job.completedAt;
+            if (completedAt == null || completedAt.isAfter(limit)) {
+                return false;
+            }
+            deleteQuietly(job.file);
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.values().forEach(job -> deleteQuietly(job.file));
+        jobs.clear();
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Impossible de supprimer le fichier d'export {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import isis.projet.backend.repository.StatisticsRepository;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * Agrège en une seule passe les lignes (jour, tâche) de toutes les sections des statistiques :
+ * totaux, catégories et répartitions par jour, semaine ISO et mois.
+ * Les compteurs sont des tableaux d'entiers indexés par des clés entières (jour epoch, année*100+semaine,
+ * année*100+mois) ; les clés texte ne sont créées qu'à la construction des DTO.
+ * Les lignes sont attendues triées par date : chaque période n'est alors formatée qu'une seule fois.
+ */
+final class StatisticsAccumulator {
+
+    private static final String TASK_ICON = "mdi-checkbox-marked-circle-outline";
+
+    private int entries;
+    private int activeEntries;
+    private int totalDuration;
+
+    private final PeriodSeries days = new PeriodSeries(Granularity.DAY);
+    private final PeriodSeries weeks = new PeriodSeries(Granularity.WEEK);
+    private final PeriodSeries months = new PeriodSeries(Granularity.MONTH);
+
+    // Dernier jour vu : les clés de semaine et de mois ne sont recalculées qu'au changement de jour
+    private long lastEpochDay = Long.MIN_VALUE;
+    private int lastWeekKey;
+    private int lastMonthKey;
+
+    // Tâches rencontrées, indexées par une table de hachage ouverte sur l'ID (slot = index + 1, 0 = libre)
+    private int[] taskIds = new int[16];
+    private String[] taskNames = new String[16];
+    private String[] taskRepetitions = new String[16];
+    private int[] taskDurations = new int[16];
+    private int taskCount;
+    private int[] taskSlots = new int[32];
+
+    /**
+     * Ajoute une ligne agrégée par la base
+     * @param row Totaux d'une tâche pour une journée
+     */
+    void add(StatisticsRepository.DayTaskTotal row) {
+        add(row.getEntryDate(), row.getTaskId(), row.getTaskName(), row.getRepetition(),
+                toInt(row.getEntries()), toInt(row.getActiveEntries()), toInt(row.getTotalDuration()));
+    }
+
+    /**
+     * Ajoute les totaux d'une tâche pour une journée
+     * @param date Date des entrées
+     * @param taskId ID de la tâche
+     * @param taskName Nom de la tâche
+     * @param repetition Répétition de la tâche (catégorie)
+     * @param entryCount Nombre d'entrées
+     * @param activeCount Nombre d'entrées avec une durée > 0
+     * @param duration Durée totale en minutes
+     */
+    void add(LocalDate date, int taskId, String taskName, String repetition,
+             int entryCount, int activeCount, int duration) {
+        accumulate(date.toEpochDay(), date, taskId, taskName, repetition, entryCount, activeCount, duration);
+    }
+
+    /**
+     * Ajoute les totaux d'une tâche pour une journée donnée par son numéro de jour epoch
+     * (la date n'est construite qu'au changement de jour)
+     * @param epochDay Jour epoch des entrées
+     * @param taskId ID de la tâche
+     * @param taskName Nom de la tâche
+     * @param repetition Répétition de la tâche (catégorie)
+     * @param entryCount Nombre d'entrées
+     * @param activeCount Nombre d'entrées avec une durée > 0
+     * @param duration Durée totale en minutes
+     */
+    void add(int epochDay, int taskId, String taskName, String repetition,
+             int entryCount, int activeCount, int duration) {
+        accumulate(epochDay, null, taskId, taskName, repetition, entryCount, activeCount, duration);
+    }
+
+    private void accumulate(long epochDay, LocalDate date, int taskId, String taskName, String repetition,
+                            int entryCount, int activeCount, int duration) {
+        entries += entryCount;
+        activeEntries += activeCount;
+        totalDuration += duration;
+
+        if (epochDay != lastEpochDay) {
+            if (date == null) {
+                date = LocalDate.ofEpochDay(epochDay);
+            }
+            lastEpochDay = epochDay;
+            lastWeekKey = date.get(IsoFields.WEEK_BASED_YEAR) * 100 + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            lastMonthKey = date.getYear() * 100 + date.getMonthValue();
+        }
+        days.add((int) epochDay, duration);
+        weeks.add(lastWeekKey, duration);
+        months.add(lastMonthKey, duration);
+
+        int index = taskIndex(taskId, taskName, repetition);
+        taskDurations[index] += duration;
+    }
+
+    int getEntries() {
+        return entries;
+    }
+
+    int getActiveEntries() {
+        return activeEntries;
+    }
+
+    int getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Construit les statistiques par catégorie (répétition de la tâche)
+     * @return Catégories triées par temps total décroissant
+     */
+    List<StatisticsDTO.CategoryStats> categoryStats() {
+        Map<String, StatisticsDTO.CategoryStats> byCategory = new HashMap<>();
+
+        for (int i = 0; i < taskCount; i++) {
+            String category = taskRepetitions[i] != null ? taskRepetitions[i] : "NONE";
+            StatisticsDTO.CategoryStats stats = byCategory.computeIfAbsent(category, k -> StatisticsDTO.CategoryStats.builder()
+                    .category(k)
+                    .totalTasks(0)
+                    .completedTasks(0)
+                    .totalTimeInMinutes(0)
+                    .tasks(new ArrayList<>())
+                    .build());
+
+            int taskTime = taskDurations[i];
+            stats.getTasks().add(StatisticsDTO.TaskStats.builder()
+                    .taskId(taskIds[i])
+                    .taskName(taskNames[i])
+                    .icon(TASK_ICON)
+                    .totalTimeInMinutes(taskTime)
+                    .completed(taskTime > 0)
+                    .percentageOfTotal(totalDuration > 0 ? (double) taskTime / totalDuration * 100 : 0)
+                    .build());
+            stats.setTotalTasks(stats.getTotalTasks() + 1);
+            stats.setTotalTimeInMinutes(stats.getTotalTimeInMinutes() + taskTime);
+            if (taskTime > 0) {
+                stats.setCompletedTasks(stats.getCompletedTasks() + 1);
+            }
+        }
+
+        List<StatisticsDTO.CategoryStats> result = new ArrayList<>(byCategory.values());
+        for (StatisticsDTO.CategoryStats stats : result) {
+            stats.setCompletionRate((double) stats.getCompletedTasks() / stats.getTotalTasks() * 100);
+            stats.getTasks().sort((a, b) -> b.getTotalTimeInMinutes().compareTo(a.getTotalTimeInMinutes()));
+        }
+        result.sort((a, b) -> b.getTotalTimeInMinutes().compareTo(a.getTotalTimeInMinutes()));
+
+        return result;
+    }
+
+    /**
+     * Construit la répartition du temps pour un type de période
+     * @param periodType Type de période ("day", "week", "month", ou "custom" pour un découpage par jour)
+     * @return Statistiques pour la période
+     */
+    StatisticsDTO.PeriodStats periodStats(String periodType) {
+        PeriodSeries series = switch (periodType) {
+            case "week" -> weeks;
+            case "month" -> months;
+            default -> days;
+        };
+
+        return StatisticsDTO.PeriodStats.builder()
+                .period(periodType)
+                .timeDistribution(series.toDistribution())
+                .totalTimeInMinutes(totalDuration)
+                .totalTasks(entries)
+                .completedTasks(activeEntries)
+                .build();
+    }
+
+    /**
+     * Tâches ayant le plus grand temps total
+     * @param limit Nombre maximal de tâches
+     * @return Tâches triées par temps total décroissant
+     */
+    List<StatisticsDTO.TopEntry> topTasks(int limit) {
+        // Tas minimal des indices de tâches : O(n log limit)
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingInt(index -> taskDurations[index]));
+        for (int i = 0; i < taskCount; i++) {
+            top.offer(i);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<StatisticsDTO.TopEntry> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int index = top.poll();
+            result.add(StatisticsDTO.TopEntry.builder()
+                    .key(String.valueOf(taskIds[index]))
+                    .label(taskNames[index])
+                    .totalTimeInMinutes(taskDurations[index])
+                    .build());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Jours ayant le plus grand temps total
+     * @param limit Nombre maximal de jours
+     * @return Jours triés par temps total décroissant
+     */
+    List<StatisticsDTO.TopEntry> topDays(int limit) {
+        PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Integer> day : days.toDistribution().entrySet()) {
+            top.offer(day);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<StatisticsDTO.TopEntry> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Map.Entry<String, Integer> day = top.poll();
+            result.add(StatisticsDTO.TopEntry.builder()
+                    .key(day.getKey())
+                    .label(day.getKey())
+                    .totalTimeInMinutes(day.getValue())
+                    .build());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private int taskIndex(int taskId, String taskName, String repetition) {
+        int mask = taskSlots.length - 1;
+        int slot = (taskId * 0x9E3779B9) & mask;
+        while (taskSlots[slot] != 0) {
+            int index = taskSlots[slot] - 1;
+            if (taskIds[index] == taskId) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (taskCount == taskIds.length) {
+            int capacity = taskCount * 2;
+            taskIds = Arrays.copyOf(taskIds, capacity);
+            taskNames = Arrays.copyOf(taskNames, capacity);
+            taskRepetitions = Arrays.copyOf(taskRepetitions, capacity);
+            taskDurations = Arrays.copyOf(taskDurations, capacity);
+        }
+        int index = taskCount++;
+        taskIds[index] = taskId;
+        taskNames[index] = taskName;
+        taskRepetitions[index] = repetition;
+        taskSlots[slot] = index + 1;
+
+        // Taux de remplissage maximal de 50 %
+        if (taskCount * 2 > taskSlots.length) {
+            rehashTasks();
+        }
+        return index;
+    }
+
+    private void rehashTasks() {
+        taskSlots = new int[taskSlots.length * 2];
+        int mask = taskSlots.length - 1;
+        for (int index = 0; index < taskCount; index++) {
+            int slot = (taskIds[index] * 0x9E3779B9) & mask;
+            while (taskSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            taskSlots[slot] = index + 1;
+        }
+    }
+
+    private static int toInt(Long value) {
+        return value != null ? value.intValue() : 0;
+    }
+
+    /**
+     * Granularité d'une série et format de ses clés
+     */
+    private enum Granularity {
+        DAY, WEEK, MONTH;
+
+        String format(int key) {
+            switch (this) {
+                case WEEK:
+                    // Semaine ISO 8601 : l'année est celle de la semaine, pas celle du jour
+                    return pad(new StringBuilder(8), key / 100, 4).append("-W").append(key % 100 < 10 ? "0" : "").append(key % 100).toString();
+                case MONTH:
+                    return pad(new StringBuilder(7), key / 100, 4).append('-').append(key % 100 < 10 ? "0" : "").append(key % 100).toString();
+                default:
+                    return LocalDate.ofEpochDay(key).toString();
+            }
+        }
+
+        private static StringBuilder pad(StringBuilder builder, int value, int width) {
+            for (int digits = Integer.toString(value).length(); digits < width; digits++) {
+                builder.append('0');
+            }
+            return builder.append(value);
+        }
+    }
+
+    /**
+     * Série temporelle de minutes : suite de (clé, minutes), une entrée par période lorsque les lignes sont triées
+     */
+    private static final class PeriodSeries {
+        private final Granularity granularity;
+        private int[] keys = new int[16];
+        private int[] minutes = new int[16];
+        private int size;
+
+        PeriodSeries(Granularity granularity) {
+            this.granularity = granularity;
+        }
+
+        void add(int key, int duration) {
+            if (size > 0 && keys[size - 1] == key) {
+                minutes[size - 1] += duration;
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                minutes = Arrays.copyOf(minutes, size * 2);
+            }
+            keys[size] = key;
+            minutes[size] = duration;
+            size++;
+        }
+
+        Map<String, Integer> toDistribution() {
+            Map<String, Integer> distribution = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+            for (int i = 0; i < size; i++) {
+                distribution.merge(granularity.format(keys[i]), minutes[i], Integer::sum);
+            }
+            return distribution;
+        }
+    }
+}
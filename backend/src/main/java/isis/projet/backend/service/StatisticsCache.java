@@ -0,0 +1,148 @@
+package isis.projet.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import isis.projet.backend.dto.StatisticsDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache borné (taille + durée de vie) des réponses de StatisticsService.
+ * Les entrées d'un utilisateur sont invalidées après chaque modification de ses feuilles de temps,
+ * uniquement pour les périodes qui contiennent les dates modifiées.
+ * Chaque invalidation incrémente la génération de l'utilisateur : une réponse calculée avant
+ * une invalidation n'est pas mise en cache, même si l'invalidation a eu lieu pendant le calcul.
+ */
+@Component
+public class StatisticsCache {
+
+    /**
+     * Clé du cache : une période nulle correspond à tout l'historique
+     */
+    public record Key(Integer userId, String endpoint, LocalDate startDate, LocalDate endDate) {
+
+        boolean covers(LocalDate date) {
+            return (startDate == null || !date.isBefore(startDate)) && (endDate == null || !date.isAfter(endDate));
+        }
+    }
+
+    private final Cache<Key, StatisticsDTO.StatisticsResponse> cache;
+    private final boolean enabled;
+    private final AtomicLong invalidations = new AtomicLong();
+    // Clés en cache par utilisateur (l'invalidation ne parcourt que celles de l'utilisateur)
+    private final Map<Integer, Set<Key>> keysByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public StatisticsCache(@Value("${app.statistics.cache.enabled:true}") boolean enabled,
+                           @Value("${app.statistics.cache.max-size:10000}") long maxSize,
+                           @Value("${app.statistics.cache.ttl:PT10M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                // Appelé pendant le retrait de l'entrée (taille, durée de vie) : l'index reste à jour
+                .evictionListener((Key key, StatisticsDTO.StatisticsResponse response, RemovalCause cause) -> {
+                    if (key != null) {
+                        keysOf(key.userId()).remove(key);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Retourne la réponse en cache ou la calcule
+     * @param key Clé de la requête
+     * @param loader Calcul de la réponse en cas d'absence
+     * @return Réponse
+     */
+    public StatisticsDTO.StatisticsResponse get(Key key, Supplier<StatisticsDTO.StatisticsResponse> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        StatisticsDTO.StatisticsResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = generationOf(key.userId()).get();
+        StatisticsDTO.StatisticsResponse response = loader.get();
+        // Une réponse partielle (section abandonnée) n'est pas mise en cache, ni une réponse calculée
+        // avant une invalidation (elle peut ne pas contenir la modification)
+        if (response.getIncompleteSections() == null) {
+            cache.asMap().compute(key, (k, existing) -> {
+                if (generationOf(k.userId()).get() != generation) {
+                    return existing;
+                }
+                keysOf(k.userId()).add(k);
+                return response;
+            });
+        }
+        return response;
+    }
+
+    /**
+     * Invalide les entrées d'un utilisateur dont la période contient l'une des dates
+     * @param userId ID de l'utilisateur
+     * @param dates Dates modifiées (toutes les entrées de l'utilisateur si vide)
+     */
+    public void evict(Integer userId, Collection<LocalDate> dates) {
+        // Génération incrémentée avant le retrait : un calcul en cours ne peut plus remettre son résultat
+        generationOf(userId).incrementAndGet();
+        Set<Key> keys = keysByUser.get(userId);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            if (dates == null || dates.isEmpty() || dates.stream().anyMatch(key::covers)) {
+                cache.asMap().compute(key, (k, existing) -> {
+                    if (existing != null) {
+                        invalidations.incrementAndGet();
+                    }
+                    keys.remove(k);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private Set<Key> keysOf(Integer userId) {
+        return keysByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    private AtomicLong generationOf(Integer userId) {
+        return generations.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTimeSheetChanged(TimeSheetChangedEvent event) {
+        evict(event.userId(), event.entryDates());
+    }
+
+    /**
+     * Compteurs du cache
+     * @return Succès, échecs, évictions (taille / durée de vie), invalidations et taille
+     */
+    public StatisticsDTO.CacheStatistics getStatistics() {
+        CacheStats stats = cache.stats();
+        return StatisticsDTO.CacheStatistics.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .invalidations(invalidations.get())
+                .size(cache.estimatedSize())
+                .build();
+    }
+}
@@ -0,0 +1,289 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.entity.DurationSketchBucket;
+import isis.projet.backend.entity.TimeSheetTask;
+import isis.projet.backend.repository.DailyTaskRollupRepository;
+import isis.projet.backend.repository.DurationSketchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Maintient la table DAILY_TASK_ROLLUP (agrégats par utilisateur, tâche et jour)
+ * et la table DURATION_SKETCH (distribution des durées par utilisateur, tâche et jour).
+ * Les méthodes de mise à jour sont appelées dans la transaction de TimeSheetService,
+ * l'agrégat est donc modifié atomiquement avec les données brutes.
+ * Les agrégats ne sont lus qu'une fois vérifiés (ou reconstruits) après le démarrage.
+ */
+@Service
+public class StatisticsRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsRollupService.class);
+
+    @Autowired
+    private DailyTaskRollupRepository dailyTaskRollupRepository;
+
+    @Autowired
+    private DurationSketchRepository durationSketchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.statistics.rollup.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${app.statistics.rollup.check-async:true}")
+    private boolean checkAsync;
+
+    private volatile boolean verified;
+
+    /**
+     * Prend en compte une entrée ajoutée à une feuille de temps
+     * @param userId ID du propriétaire de la feuille
+     * @param entryDate Date de la feuille
+     * @param entry Entrée ajoutée
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void entryAdded(Integer userId, LocalDate entryDate, TimeSheetTask entry) {
+        apply(userId, entry.getTaskId(), entryDate, 1,
+                active(entry.getDuration()), completed(entry.getCompleted()), duration(entry.getDuration()));
+        applySketch(userId, entry.getTaskId(), entryDate, DurationSketch.bucketOf(entry.getDuration()), 1);
+    }
+
+    /**
+     * Prend en compte une entrée supprimée d'une feuille de temps
+     * @param userId ID du propriétaire de la feuille
+     * @param entryDate Date de la feuille
+     * @param entry Entrée supprimée
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void entryRemoved(Integer userId, LocalDate entryDate, TimeSheetTask entry) {
+        apply(userId, entry.getTaskId(), entryDate, -1,
+                -active(entry.getDuration()), -completed(entry.getCompleted()), -duration(entry.getDuration()));
+        applySketch(userId, entry.getTaskId(), entryDate, DurationSketch.bucketOf(entry.getDuration()), -1);
+    }
+
+    /**
+     * Prend en compte la modification de la durée ou de l'état d'une entrée
+     * @param userId ID du propriétaire de la feuille
+     * @param entryDate Date de la feuille
+     * @param taskId ID de la tâche
+     * @param oldDuration Durée avant modification
+     * @param oldCompleted État "complété" avant modification
+     * @param entry Entrée modifiée
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void entryChanged(Integer userId, LocalDate entryDate, Integer taskId,
+                             Integer oldDuration, Boolean oldCompleted, TimeSheetTask entry) {
+        int activeDelta = active(entry.getDuration()) - active(oldDuration);
+        int completedDelta = completed(entry.getCompleted()) - completed(oldCompleted);
+        int durationDelta = duration(entry.getDuration()) - duration(oldDuration);
+
+        if (activeDelta != 0 || completedDelta != 0 || durationDelta != 0) {
+            apply(userId, taskId, entryDate, 0, activeDelta, completedDelta, durationDelta);
+        }
+
+        int oldBucket = DurationSketch.bucketOf(oldDuration);
+        int newBucket = DurationSketch.bucketOf(entry.getDuration());
+        if (oldBucket != newBucket) {
+            applySketch(userId, taskId, entryDate, oldBucket, -1);
+            applySketch(userId, taskId, entryDate, newBucket, 1);
+        }
+    }
+
+    /**
+     * Déplace les entrées d'une feuille de temps dont la date a changé
+     * @param userId ID du propriétaire de la feuille
+     * @param oldDate Ancienne date de la feuille
+     * @param newDate Nouvelle date de la feuille
+     * @param entries Entrées de la feuille
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void timeSheetMoved(Integer userId, LocalDate oldDate, LocalDate newDate, List<TimeSheetTask> entries) {
+        for (TimeSheetTask entry : entries) {
+            entryRemoved(userId, oldDate, entry);
+            entryAdded(userId, newDate, entry);
+        }
+    }
+
+    /**
+     * Reconstruit entièrement les agrégats et les sketches à partir de TIME_SHEET et TIME_SHEET_TASK
+     * @return Nombre de lignes d'agrégat créées
+     */
+    @Transactional
+    public int rebuild() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                verified = true;
+            }
+        });
+        dailyTaskRollupRepository.deleteAllInBatch();
+        int rows = dailyTaskRollupRepository.insertFromTimeSheets();
+        rebuildSketches();
+        return rows;
+    }
+
+    /**
+     * Indique si les agrégats ont été vérifiés ou reconstruits depuis le démarrage. Jusque-là,
+     * StatisticsService lit les entrées brutes.
+     */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * Lance la vérification des agrégats une fois l'application démarrée, en arrière-plan par défaut :
+     * le démarrage n'attend ni les requêtes de contrôle ni une éventuelle reconstruction
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (checkAsync) {
+            Thread.ofPlatform().name("rollup-check").daemon().start(this::verifyQuietly);
+        } else {
+            verifyQuietly();
+        }
+    }
+
+    private void verifyQuietly() {
+        try {
+            verify();
+        } catch (RuntimeException e) {
+            logger.error("Vérification des agrégats statistiques impossible, les statistiques restent lues "
+                    + "dans les entrées brutes", e);
+        }
+    }
+
+    /**
+     * Vérifie les agrégats : ils sont reconstruits si app.statistics.rollup.rebuild-on-startup est activé,
+     * ou si leurs totaux (entrées, entrées complétées, durée) ne correspondent plus à ceux de TIME_SHEET_TASK
+     * (premier déploiement, table vidée ou modifiée hors application, écart ignoré par apply)
+     */
+    public void verify() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            DailyTaskRollupRepository.Totals expected = dailyTaskRollupRepository.sumTimeSheetEntries();
+            DailyTaskRollupRepository.Totals actual = dailyTaskRollupRepository.sumRollup();
+            long sketchEntries = durationSketchRepository.sumEntryCount();
+            boolean consistent = actual.getEntries().equals(expected.getEntries())
+                    && actual.getCompleted().equals(expected.getCompleted())
+                    && actual.getDuration().equals(expected.getDuration())
+                    && sketchEntries == expected.getEntries();
+            if (rebuildOnStartup || !consistent) {
+                int rows = rebuild();
+                logger.info("Agrégats statistiques reconstruits : {} lignes ({} entrées)", rows, expected.getEntries());
+            }
+        });
+        verified = true;
+    }
+
+    /**
+     * Ajoute les écarts à la ligne d'agrégat, créée au besoin. Deux transactions peuvent créer la même
+     * ligne en même temps : l'insertion ignore le conflit et la perdante incrémente la ligne de la gagnante.
+     */
+    private void apply(Integer userId, Integer taskId, LocalDate entryDate,
+                       int entries, int active, int completed, int duration) {
+        int updated = dailyTaskRollupRepository.increment(userId, taskId, entryDate, entries, active, completed, duration);
+
+        if (updated == 0 && entries > 0) {
+            if (dailyTaskRollupRepository.insertIfAbsent(userId, taskId, entryDate, entries, active, completed, duration) == 0) {
+                dailyTaskRollupRepository.increment(userId, taskId, entryDate, entries, active, completed, duration);
+            }
+        } else if (updated == 0) {
+            // Modification ou retrait d'une entrée sans ligne d'agrégat : l'écart ne peut pas être appliqué
+            logger.warn("Agrégat absent (utilisateur {}, tâche {}, {}) : écart ignoré (entrées {}, actives {}, "
+                    + "complétées {}, durée {}), une reconstruction est nécessaire",
+                    userId, taskId, entryDate, entries, active, completed, duration);
+        } else if (entries < 0) {
+            dailyTaskRollupRepository.deleteIfEmpty(userId, taskId, entryDate);
+        }
+    }
+
+    private void applySketch(Integer userId, Integer taskId, LocalDate entryDate, int bucket, int entries) {
+        int updated = durationSketchRepository.increment(userId, taskId, entryDate, bucket, entries);
+
+        if (updated == 0 && entries > 0) {
+            if (durationSketchRepository.insertIfAbsent(userId, taskId, entryDate, bucket, entries) == 0) {
+                durationSketchRepository.increment(userId, taskId, entryDate, bucket, entries);
+            }
+        } else if (updated == 0) {
+            logger.warn("Intervalle de durée absent (utilisateur {}, tâche {}, {}, intervalle {}) : retrait ignoré, "
+                    + "une reconstruction est nécessaire", userId, taskId, entryDate, bucket);
+        } else if (entries < 0) {
+            durationSketchRepository.deleteIfEmpty(userId, taskId, entryDate, bucket);
+        }
+    }
+
+    /**
+     * Recalcule les sketches : les durées exactes sont regroupées par la base, puis rangées
+     * dans leur intervalle par (utilisateur, tâche, jour) au fil du flux
+     */
+    private void rebuildSketches() {
+        durationSketchRepository.deleteAllInBatch();
+
+        List<DurationSketchBucket> group = new ArrayList<>();
+        TreeMap<Integer, Integer> buckets = new TreeMap<>();
+        DurationSketchRepository.DurationCount[] current = new DurationSketchRepository.DurationCount[1];
+
+        try (Stream<DurationSketchRepository.DurationCount> rows = durationSketchRepository.streamDurationCounts()) {
+            rows.forEach(row -> {
+                DurationSketchRepository.DurationCount first = current[0];
+                if (first != null && !(first.getUserId().equals(row.getUserId())
+                        && first.getTaskId().equals(row.getTaskId())
+                        && Objects.equals(first.getEntryDate(), row.getEntryDate()))) {
+                    flushSketch(first, buckets, group);
+                }
+                current[0] = row;
+                buckets.merge(DurationSketch.bucketOf(row.getDuration()), row.getEntries().intValue(), Integer::sum);
+            });
+        }
+        if (current[0] != null) {
+            flushSketch(current[0], buckets, group);
+        }
+        durationSketchRepository.saveAll(group);
+    }
+
+    private void flushSketch(DurationSketchRepository.DurationCount key, TreeMap<Integer, Integer> buckets,
+                             List<DurationSketchBucket> group) {
+        buckets.forEach((bucket, entries) -> group.add(DurationSketchBucket.builder()
+                .userId(key.getUserId())
+                .taskId(key.getTaskId())
+                .entryDate(key.getEntryDate())
+                .bucket(bucket)
+                .entryCount(entries)
+                .build()));
+        buckets.clear();
+        if (group.size() >= 500) {
+            durationSketchRepository.saveAll(group);
+            group.clear();
+        }
+    }
+
+    private static int active(Integer duration) {
+        return duration != null && duration > 0 ? 1 : 0;
+    }
+
+    private static int completed(Boolean completed) {
+        return Boolean.TRUE.equals(completed) ? 1 : 0;
+    }
+
+    private static int duration(Integer duration) {
+        return duration != null ? duration : 0;
+    }
+}
@@ -0,0 +1,111 @@
+package isis.projet.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Exécute en parallèle les sections indépendantes d'une réponse statistique (requêtes de comptage,
+ * d'agrégation, de membres...). Chaque section tourne sur un thread virtuel, dans sa propre transaction
+ * en lecture seule, avec un délai maximal ; au-delà, la section est abandonnée et la réponse est partielle.
+ * Le nombre de sections simultanées est borné pour ne pas épuiser le pool de connexions ; le délai
+ * d'une section court à partir de l'obtention de son permis, comme le timeout JDBC de sa transaction.
+ * Si l'appelant est déjà dans une transaction, les sections sont exécutées directement dans celle-ci,
+ * séquentiellement : une erreur est alors propagée (la transaction de l'appelant ne peut plus être validée).
+ */
+@Component
+public class StatisticsSectionExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsSectionExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public StatisticsSectionExecutor(PlatformTransactionManager transactionManager,
+                                     @Value("${app.statistics.sections.max-concurrency:8}") int maxConcurrency,
+                                     @Value("${app.statistics.sections.timeout:PT10S}") Duration timeout) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("statistics-section-", 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+        this.timeout = timeout;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Le délai est aussi transmis à la base (timeout JDBC) pour interrompre la requête elle-même
+        this.readOnlyTransaction.setTimeout((int) Math.max(1, timeout.toSeconds()));
+    }
+
+    /**
+     * Section en cours de calcul
+     * @param names Champs de la réponse incomplets si la section échoue
+     * @param deadline Échéance (System.nanoTime), connue quand la section obtient son permis
+     */
+    public record Section<T>(List<String> names, Future<T> future, CompletableFuture<Long> deadline) {
+    }
+
+    /**
+     * Lance le calcul d'une section
+     * @param names Champs de la réponse alimentés par la section
+     * @param work Calcul de la section
+     * @return Section en cours
+     */
+    public <T> Section<T> submit(List<String> names, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return new Section<>(names, CompletableFuture.completedFuture(work.get()),
+                    CompletableFuture.completedFuture(System.nanoTime()));
+        }
+
+        CompletableFuture<Long> deadline = new CompletableFuture<>();
+        return new Section<>(names, executor.submit(() -> {
+            if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("Aucun permis obtenu en " + timeout);
+            }
+            try {
+                deadline.complete(System.nanoTime() + timeout.toNanos());
+                return readOnlyTransaction.execute(status -> work.get());
+            } finally {
+                permits.release();
+            }
+        }), deadline);
+    }
+
+    /**
+     * Attend le résultat d'une section jusqu'à son échéance
+     * @param section Section en cours
+     * @param incomplete Champs incomplets de la réponse, complétés en cas d'échec ou de dépassement du délai
+     * @return Résultat de la section, ou null si elle a échoué ou dépassé son délai
+     */
+    public <T> T join(Section<T> section, Collection<String> incomplete) {
+        try {
+            // Attente du permis (bornée par le délai), puis délai de la section à partir de son démarrage
+            long deadline = section.deadline().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return section.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            section.future().cancel(true);
+            logger.warn("Section statistique {} abandonnée après {}", section.names(), timeout);
+        } catch (ExecutionException e) {
+            logger.warn("Échec de la section statistique {}", section.names(), e.getCause());
+        } catch (InterruptedException e) {
+            section.future().cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        incomplete.addAll(section.names());
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
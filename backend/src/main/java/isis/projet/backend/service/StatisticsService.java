@@ -2,33 +2,78 @@ package isis.projet.backend.service;
 
 import isis.projet.backend.dto.StatisticsDTO;
 import isis.projet.backend.entity.*;
-import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.DailyTaskRollupRepository;
+import isis.projet.backend.repository.DurationSketchRepository;
+import isis.projet.backend.repository.GroupRepository;
+import isis.projet.backend.repository.StatisticsRepository;
 import isis.projet.backend.repository.TimeSheetRepository;
-import isis.projet.backend.repository.TimeSheetTaskRepository;
+import isis.projet.backend.repository.UserGroupRepository;
 import isis.projet.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.WeekFields;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class StatisticsService {
 
+    /**
+     * Bornes utilisées lorsqu'aucune date n'est précisée
+     */
+    private static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
     @Autowired
     private TimeSheetRepository timeSheetRepository;
 
     @Autowired
-    private TimeSheetTaskRepository timeSheetTaskRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private TaskRepository taskRepository;
+    private StatisticsRepository statisticsRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private DailyTaskRollupRepository dailyTaskRollupRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private UserGroupRepository userGroupRepository;
+
+    @Autowired
+    private StatisticsCache statisticsCache;
+
+    @Autowired
+    private TimerEventBuffer timerEventBuffer;
+
+    @Autowired
+    private TimeEntryColumnStore timeEntryColumnStore;
+
+    @Autowired
+    private StatisticsSectionExecutor statisticsSectionExecutor;
+
+    @Autowired
+    private DurationSketchRepository durationSketchRepository;
+
+    @Autowired
+    private StatisticsRollupService statisticsRollupService;
+
+    /**
+     * Lit les agrégats journaliers (DAILY_TASK_ROLLUP) au lieu des entrées brutes
+     */
+    @Value("${app.statistics.use-rollup:true}")
+    private boolean useRollup;
+
+    /**
+     * Les agrégats sont lus s'ils sont activés et vérifiés depuis le démarrage
+     */
+    private boolean readRollup() {
+        return useRollup && statisticsRollupService.isVerified();
+    }
 
     /**
      * Obtient les statistiques globales pour un utilisateur
@@ -36,50 +81,133 @@ public class StatisticsService {
      * @return Statistiques globales
      */
     public StatisticsDTO.StatisticsResponse getUserStatistics(Integer userId) {
+        timerEventBuffer.flushUser(userId);
+        return statisticsCache.get(new StatisticsCache.Key(userId, "user", null, null),
+                () -> computeUserStatistics(userId));
+    }
+
+    private StatisticsDTO.StatisticsResponse computeUserStatistics(Integer userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
 
-        List<TimeSheet> timeSheets = timeSheetRepository.findByUserId(userId);
-
-        if (timeSheets.isEmpty()) {
+        // Comptage des feuilles et agrégation des entrées sont indépendants : calculés en parallèle
+        Set<String> incomplete = new LinkedHashSet<>();
+        StatisticsSectionExecutor.Section<Long> timeSheets = statisticsSectionExecutor.submit(List.of("summary"),
+                () -> countTimeSheets(userId, MIN_DATE, MAX_DATE));
+        StatisticsSectionExecutor.Section<StatisticsAccumulator> entries = statisticsSectionExecutor.submit(
+                List.of("summary", "categories", "dailyStats", "weeklyStats", "monthlyStats"),
+                () -> aggregateUser(userId, MIN_DATE, MAX_DATE));
+        Long timeSheetCount = statisticsSectionExecutor.join(timeSheets, incomplete);
+        StatisticsAccumulator accumulator = statisticsSectionExecutor.join(entries, incomplete);
+
+        if (timeSheetCount != null && timeSheetCount == 0) {
             return createEmptyStatistics(user);
         }
 
-        StatisticsDTO.UserStatsSummary summary = calculateUserSummary(user, timeSheets);
-        List<StatisticsDTO.CategoryStats> categories = calculateCategoryStats(timeSheets);
-        StatisticsDTO.PeriodStats dailyStats = calculatePeriodStats(timeSheets, "day");
-        StatisticsDTO.PeriodStats weeklyStats = calculatePeriodStats(timeSheets, "week");
-        StatisticsDTO.PeriodStats monthlyStats = calculatePeriodStats(timeSheets, "month");
-
         return StatisticsDTO.StatisticsResponse.builder()
-                .summary(summary)
-                .categories(categories)
-                .dailyStats(dailyStats)
-                .weeklyStats(weeklyStats)
-                .monthlyStats(monthlyStats)
+                .summary(buildUserSummary(user, timeSheetCount, accumulator))
+                .categories(accumulator != null ? accumulator.categoryStats() : null)
+                .dailyStats(accumulator != null ? accumulator.periodStats("day") : null)
+                .weeklyStats(accumulator != null ? accumulator.periodStats("week") : null)
+                .monthlyStats(accumulator != null ? accumulator.periodStats("month") : null)
+                .incompleteSections(incomplete.isEmpty() ? null : List.copyOf(incomplete))
                 .build();
     }
 
     /**
-     * Obtient les statistiques pour un groupe
+     * Obtient les statistiques pour un groupe.
+     * Les totaux de tous les membres sont calculés par des requêtes groupées uniques,
+     * quel que soit le nombre de membres. Une section qui échoue ou dépasse son délai est omise
+     * et signalée dans incompleteSections.
      * @param groupId ID du groupe
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
      * @return Statistiques du groupe
      */
-    public Map<Integer, StatisticsDTO.UserStatsSummary> getGroupStatistics(Integer groupId) {
-        List<UserGroup> userGroups = new ArrayList<>();
+    public StatisticsDTO.GroupStatisticsResponse getGroupStatistics(Integer groupId, LocalDate startDate, LocalDate endDate) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new RuntimeException("Groupe introuvable"));
+
+        LocalDate from = startDate != null ? startDate : MIN_DATE;
+        LocalDate to = endDate != null ? endDate : MAX_DATE;
+
+        // Les quatre requêtes sont indépendantes : calculées en parallèle
+        Set<String> incomplete = new LinkedHashSet<>();
+        List<String> memberSections = List.of("members", "totalTimeSheets", "totalTasks", "completedTasks",
+                "totalTimeInMinutes", "completionRate");
+        StatisticsSectionExecutor.Section<List<UserGroup>> membersSection = statisticsSectionExecutor.submit(memberSections,
+                () -> userGroupRepository.findByGroupIdWithUser(groupId));
+        StatisticsSectionExecutor.Section<List<StatisticsRepository.MemberTotal>> totalsSection = statisticsSectionExecutor.submit(memberSections,
+                () -> readRollup()
+                        ? dailyTaskRollupRepository.sumEntriesByGroupMember(groupId, from, to)
+                        : statisticsRepository.sumEntriesByGroupMember(groupId, from, to));
+        StatisticsSectionExecutor.Section<List<StatisticsRepository.MemberTimeSheetCount>> countsSection = statisticsSectionExecutor.submit(memberSections,
+                () -> statisticsRepository.countTimeSheetsByGroupMember(groupId, from, to));
+        StatisticsSectionExecutor.Section<StatisticsAccumulator> entriesSection = statisticsSectionExecutor.submit(
+                List.of("categories", "dailyStats", "weeklyStats", "monthlyStats"),
+                () -> aggregate(readRollup()
+                        ? dailyTaskRollupRepository.streamEntriesByDayAndTaskForGroup(groupId, from, to)
+                        : statisticsRepository.streamEntriesByDayAndTaskForGroup(groupId, from, to)));
+
+        List<UserGroup> members = statisticsSectionExecutor.join(membersSection, incomplete);
+        List<StatisticsRepository.MemberTotal> memberTotals = statisticsSectionExecutor.join(totalsSection, incomplete);
+        List<StatisticsRepository.MemberTimeSheetCount> counts = statisticsSectionExecutor.join(countsSection, incomplete);
+        StatisticsAccumulator accumulator = statisticsSectionExecutor.join(entriesSection, incomplete);
+
+        StatisticsDTO.GroupStatisticsResponse.GroupStatisticsResponseBuilder response = StatisticsDTO.GroupStatisticsResponse.builder()
+                .groupId(group.getId())
+                .groupName(group.getName())
+                .startDate(startDate)
+                .endDate(endDate)
+                .categories(accumulator != null ? accumulator.categoryStats() : null)
+                .dailyStats(accumulator != null ? accumulator.periodStats("day") : null)
+                .weeklyStats(accumulator != null ? accumulator.periodStats("week") : null)
+                .monthlyStats(accumulator != null ? accumulator.periodStats("month") : null)
+                .incompleteSections(incomplete.isEmpty() ? null : List.copyOf(incomplete));
+
+        if (members == null || memberTotals == null || counts == null) {
+            return response.build();
+        }
 
-        Map<Integer, StatisticsDTO.UserStatsSummary> userStats = new HashMap<>();
+        Map<Integer, Long> timeSheetCounts = new HashMap<>();
+        for (StatisticsRepository.MemberTimeSheetCount count : counts) {
+            timeSheetCounts.put(count.getUserId(), count.getTimeSheets());
+        }
 
-        for (UserGroup userGroup : userGroups) {
-            User user = userGroup.getUser();
-            List<TimeSheet> timeSheets = timeSheetRepository.findByUserId(user.getId());
+        Map<Integer, StatisticsRepository.MemberTotal> totalsByMember = new HashMap<>();
+        for (StatisticsRepository.MemberTotal memberTotal : memberTotals) {
+            totalsByMember.put(memberTotal.getUserId(), memberTotal);
+        }
 
-            if (!timeSheets.isEmpty()) {
-                userStats.put(user.getId(), calculateUserSummary(user, timeSheets));
-            }
+        Map<Integer, StatisticsDTO.UserStatsSummary> memberStats = new LinkedHashMap<>();
+        int totalTimeSheets = 0;
+        int totalTasks = 0;
+        int completedTasks = 0;
+        int totalTimeInMinutes = 0;
+
+        for (UserGroup member : members) {
+            StatisticsRepository.MemberTotal memberTotal = totalsByMember.get(member.getUserId());
+            StatisticsDTO.UserStatsSummary summary = memberTotal != null
+                    ? buildUserSummary(member.getUser(), timeSheetCounts.getOrDefault(member.getUserId(), 0L),
+                            memberTotal.getEntries().intValue(), memberTotal.getActiveEntries().intValue(),
+                            memberTotal.getTotalDuration().intValue())
+                    : buildUserSummary(member.getUser(), timeSheetCounts.getOrDefault(member.getUserId(), 0L), 0, 0, 0);
+            memberStats.put(member.getUserId(), summary);
+
+            totalTimeSheets += summary.getTotalTimeSheets();
+            totalTasks += summary.getTotalTasks();
+            completedTasks += summary.getCompletedTasks();
+            totalTimeInMinutes += summary.getTotalTimeInMinutes();
         }
 
-        return userStats;
+        return response
+                .totalTimeSheets(totalTimeSheets)
+                .totalTasks(totalTasks)
+                .completedTasks(completedTasks)
+                .totalTimeInMinutes(totalTimeInMinutes)
+                .completionRate(totalTasks > 0 ? (double) completedTasks / totalTasks * 100 : 0)
+                .members(memberStats)
+                .build();
     }
 
     /**
@@ -90,248 +218,260 @@ public class StatisticsService {
      * @return Statistiques pour la période
      */
     public StatisticsDTO.StatisticsResponse getStatisticsByPeriod(Integer userId, LocalDate startDate, LocalDate endDate) {
+        timerEventBuffer.flushUser(userId);
+        return statisticsCache.get(new StatisticsCache.Key(userId, "period", startDate, endDate),
+                () -> computeStatisticsByPeriod(userId, startDate, endDate));
+    }
+
+    private StatisticsDTO.StatisticsResponse computeStatisticsByPeriod(Integer userId, LocalDate startDate, LocalDate endDate) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
 
-        List<TimeSheet> allTimeSheets = timeSheetRepository.findByUserId(userId);
+        Set<String> incomplete = new LinkedHashSet<>();
+        StatisticsSectionExecutor.Section<Long> timeSheets = statisticsSectionExecutor.submit(List.of("summary"),
+                () -> countTimeSheets(userId, startDate, endDate));
+        StatisticsSectionExecutor.Section<StatisticsAccumulator> entries = statisticsSectionExecutor.submit(
+                List.of("summary", "categories", "dailyStats"),
+                () -> aggregateUser(userId, startDate, endDate));
+        Long timeSheetCount = statisticsSectionExecutor.join(timeSheets, incomplete);
+        StatisticsAccumulator accumulator = statisticsSectionExecutor.join(entries, incomplete);
 
-        List<TimeSheet> timeSheets = allTimeSheets.stream()
-                .filter(ts -> !ts.getEntryDate().isBefore(startDate) && !ts.getEntryDate().isAfter(endDate))
-                .collect(Collectors.toList());
-
-        if (timeSheets.isEmpty()) {
+        if (timeSheetCount != null && timeSheetCount == 0) {
             return createEmptyStatistics(user);
         }
 
-        StatisticsDTO.UserStatsSummary summary = calculateUserSummary(user, timeSheets);
-        List<StatisticsDTO.CategoryStats> categories = calculateCategoryStats(timeSheets);
-        StatisticsDTO.PeriodStats periodStats = calculateCustomPeriodStats(timeSheets, startDate, endDate);
-
         return StatisticsDTO.StatisticsResponse.builder()
-                .summary(summary)
-                .categories(categories)
-                .dailyStats(periodStats)
+                .summary(buildUserSummary(user, timeSheetCount, accumulator))
+                .categories(accumulator != null ? accumulator.categoryStats() : null)
+                .dailyStats(accumulator != null ? accumulator.periodStats("custom") : null)
+                .incompleteSections(incomplete.isEmpty() ? null : List.copyOf(incomplete))
                 .build();
     }
 
     /**
-     * Calcule un résumé des statistiques pour un utilisateur
-     * @param user Utilisateur
-     * @param timeSheets Liste des feuilles de temps
-     * @return Résumé des statistiques
+     * Obtient la distribution des durées des entrées d'un utilisateur : quantiles (p50, p90, p99)
+     * par tâche, par catégorie et au global, et histogramme.
+     * Les sketches journaliers de la période sont fusionnés par la base (somme des compteurs par intervalle) :
+     * le coût ne dépend que du nombre de tâches et d'intervalles, pas du nombre d'entrées.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @return Distribution des durées
      */
-    private StatisticsDTO.UserStatsSummary calculateUserSummary(User user, List<TimeSheet> timeSheets) {
-        int totalTasks = 0;
-        int completedTasks = 0;
-        int totalTimeInMinutes = 0;
-
-        for (TimeSheet timeSheet : timeSheets) {
-            List<TimeSheetTask> timeSheetTasks = timeSheetTaskRepository.findByTimeSheetId(timeSheet.getId());
-
-            totalTasks += timeSheetTasks.size();
-
-            for (TimeSheetTask tst : timeSheetTasks) {
-                totalTimeInMinutes += tst.getDuration();
-                if (tst.getDuration() > 0) {
-                    completedTasks++;
-                }
-            }
+    public StatisticsDTO.DistributionResponse getDurationDistribution(Integer userId, LocalDate startDate, LocalDate endDate) {
+        timerEventBuffer.flushUser(userId);
+        LocalDate from = startDate != null ? startDate : MIN_DATE;
+        LocalDate to = endDate != null ? endDate : MAX_DATE;
+
+        List<DurationSketchRepository.TaskBucketCount> rows = joinRequired(statisticsSectionExecutor.submit(List.of("distribution"),
+                () -> durationSketchRepository.sumByTaskAndBucket(userId, from, to)));
+
+        DurationSketch overall = new DurationSketch();
+        Map<Integer, DurationSketch> taskSketches = new LinkedHashMap<>();
+        Map<Integer, DurationSketchRepository.TaskBucketCount> taskRows = new HashMap<>();
+        Map<String, DurationSketch> categorySketches = new LinkedHashMap<>();
+
+        for (DurationSketchRepository.TaskBucketCount row : rows) {
+            long entries = row.getEntries();
+            overall.add(row.getBucket(), entries);
+            taskSketches.computeIfAbsent(row.getTaskId(), k -> new DurationSketch()).add(row.getBucket(), entries);
+            taskRows.putIfAbsent(row.getTaskId(), row);
+            categorySketches.computeIfAbsent(categoryOf(row.getRepetition()), k -> new DurationSketch()).add(row.getBucket(), entries);
         }
 
-        double completionRate = totalTasks > 0 ? (double) completedTasks / totalTasks * 100 : 0;
-
-        return StatisticsDTO.UserStatsSummary.builder()
-                .userId(user.getId())
-                .userName(user.getPseudo())
-                .totalTimeSheets(timeSheets.size())
-                .totalTasks(totalTasks)
-                .completedTasks(completedTasks)
-                .totalTimeInMinutes(totalTimeInMinutes)
-                .completionRate(completionRate)
+        List<StatisticsDTO.PercentileStats> tasks = new ArrayList<>();
+        taskSketches.forEach((taskId, sketch) -> {
+            DurationSketchRepository.TaskBucketCount row = taskRows.get(taskId);
+            tasks.add(percentiles(taskId, row.getTaskName(), categoryOf(row.getRepetition()), sketch));
+        });
+        tasks.sort((a, b) -> b.getCount().compareTo(a.getCount()));
+
+        List<StatisticsDTO.PercentileStats> categories = new ArrayList<>();
+        categorySketches.forEach((category, sketch) -> categories.add(percentiles(null, category, category, sketch)));
+        categories.sort((a, b) -> b.getCount().compareTo(a.getCount()));
+
+        return StatisticsDTO.DistributionResponse.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .relativeAccuracy(DurationSketch.RELATIVE_ACCURACY)
+                .overall(percentiles(null, null, null, overall))
+                .tasks(tasks)
+                .categories(categories)
+                .histogram(histogram(overall))
                 .build();
     }
 
     /**
-     * Calcule les statistiques par catégorie
-     * @param timeSheets Liste des feuilles de temps
-     * @return Liste des statistiques par catégorie
+     * Obtient le classement des tâches ou des jours les plus longs d'un utilisateur
+     * @param userId ID de l'utilisateur
+     * @param by "tasks" ou "days"
+     * @param limit Nombre d'éléments
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @return Classement par temps total décroissant
      */
-    private List<StatisticsDTO.CategoryStats> calculateCategoryStats(List<TimeSheet> timeSheets) {
-        Map<String, List<Task>> tasksByCategory = new HashMap<>();
-        Map<Integer, Integer> taskTimeMap = new HashMap<>();
-
-        for (TimeSheet timeSheet : timeSheets) {
-            List<TimeSheetTask> timeSheetTasks = timeSheetTaskRepository.findByTimeSheetId(timeSheet.getId());
-
-            for (TimeSheetTask tst : timeSheetTasks) {
-                Task task = taskRepository.findById(tst.getTaskId()).orElse(null);
-                if (task != null) {
-                    String category = task.getRepetition() != null ? task.getRepetition() : "NONE";
-
-                    if (!tasksByCategory.containsKey(category)) {
-                        tasksByCategory.put(category, new ArrayList<>());
-                    }
-
-                    if (!tasksByCategory.get(category).contains(task)) {
-                        tasksByCategory.get(category).add(task);
-                    }
-
-                    taskTimeMap.put(task.getId(), taskTimeMap.getOrDefault(task.getId(), 0) + tst.getDuration());
-                }
-            }
+    public StatisticsDTO.TopResponse getTop(Integer userId, String by, int limit, LocalDate startDate, LocalDate endDate) {
+        if (!"tasks".equals(by) && !"days".equals(by)) {
+            throw new RuntimeException("Classement inconnu : " + by + " (attendu : tasks ou days)");
         }
+        if (limit <= 0) {
+            throw new RuntimeException("La limite doit être positive");
+        }
+        timerEventBuffer.flushUser(userId);
+        LocalDate from = startDate != null ? startDate : MIN_DATE;
+        LocalDate to = endDate != null ? endDate : MAX_DATE;
+
+        StatisticsAccumulator accumulator = joinRequired(statisticsSectionExecutor.submit(List.of("top"),
+                () -> aggregateUser(userId, from, to)));
+
+        return StatisticsDTO.TopResponse.builder()
+                .by(by)
+                .limit(limit)
+                .startDate(startDate)
+                .endDate(endDate)
+                .entries("tasks".equals(by) ? accumulator.topTasks(limit) : accumulator.topDays(limit))
+                .build();
+    }
 
-        List<StatisticsDTO.CategoryStats> result = new ArrayList<>();
-        int totalTime = taskTimeMap.values().stream().mapToInt(Integer::intValue).sum();
-
-        for (Map.Entry<String, List<Task>> entry : tasksByCategory.entrySet()) {
-            String category = entry.getKey();
-            List<Task> tasks = entry.getValue();
-
-            int categoryTotalTime = 0;
-            List<StatisticsDTO.TaskStats> taskStatsList = new ArrayList<>();
-
-            for (Task task : tasks) {
-                int taskTime = taskTimeMap.getOrDefault(task.getId(), 0);
-                categoryTotalTime += taskTime;
-
-                StatisticsDTO.TaskStats taskStats = StatisticsDTO.TaskStats.builder()
-                        .taskId(task.getId())
-                        .taskName(task.getName())
-                        .icon("mdi-checkbox-marked-circle-outline")
-                        .totalTimeInMinutes(taskTime)
-                        .completed(taskTime > 0)
-                        .percentageOfTotal(totalTime > 0 ? (double) taskTime / totalTime * 100 : 0)
-                        .build();
-
-                taskStatsList.add(taskStats);
-            }
-
-            taskStatsList.sort((a, b) -> b.getTotalTimeInMinutes().compareTo(a.getTotalTimeInMinutes()));
-
-            StatisticsDTO.CategoryStats categoryStats = StatisticsDTO.CategoryStats.builder()
-                    .category(category)
-                    .totalTasks(tasks.size())
-                    .completedTasks((int) taskStatsList.stream().filter(StatisticsDTO.TaskStats::getCompleted).count())
-                    .totalTimeInMinutes(categoryTotalTime)
-                    .completionRate(tasks.size() > 0 ? (double) taskStatsList.stream().filter(StatisticsDTO.TaskStats::getCompleted).count() / tasks.size() * 100 : 0)
-                    .tasks(taskStatsList)
-                    .build();
-
-            result.add(categoryStats);
+    private <T> T joinRequired(StatisticsSectionExecutor.Section<T> section) {
+        List<String> incomplete = new ArrayList<>();
+        T result = statisticsSectionExecutor.join(section, incomplete);
+        if (!incomplete.isEmpty()) {
+            throw new RuntimeException("Le calcul des statistiques n'a pas abouti");
         }
+        return result;
+    }
 
-        result.sort((a, b) -> b.getTotalTimeInMinutes().compareTo(a.getTotalTimeInMinutes()));
+    private static String categoryOf(String repetition) {
+        return repetition != null ? repetition : "NONE";
+    }
 
-        return result;
+    private static StatisticsDTO.PercentileStats percentiles(Integer taskId, String name, String category, DurationSketch sketch) {
+        return StatisticsDTO.PercentileStats.builder()
+                .taskId(taskId)
+                .name(name)
+                .category(category)
+                .count(sketch.getCount())
+                .p50(sketch.quantile(0.5))
+                .p90(sketch.quantile(0.9))
+                .p99(sketch.quantile(0.99))
+                .build();
     }
 
     /**
-     * Calcule les statistiques pour une période spécifique
-     * @param timeSheets Liste des feuilles de temps
-     * @param periodType Type de période ("day", "week", "month")
-     * @return Statistiques pour la période
+     * Histogramme des durées en intervalles de puissances de 2 (0, ]0,1], ]1,2], ]2,4], ...),
+     * chaque intervalle du sketch étant rangé selon sa valeur représentative
+     * @param sketch Sketch fusionné
+     * @return Intervalles non vides
      */
-    private StatisticsDTO.PeriodStats calculatePeriodStats(List<TimeSheet> timeSheets, String periodType) {
-        DateTimeFormatter formatter;
-        Map<String, Integer> timeDistribution = new HashMap<>();
-
-        switch (periodType) {
-            case "day":
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                break;
-            case "week":
-                formatter = DateTimeFormatter.ofPattern("yyyy-'W'ww");
-                break;
-            case "month":
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM");
-                break;
-            default:
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        }
-
-        int totalTimeInMinutes = 0;
-        int totalTasks = 0;
-        int completedTasks = 0;
-
-        for (TimeSheet timeSheet : timeSheets) {
-            String periodKey;
-
-            if ("week".equals(periodType)) {
-                WeekFields weekFields = WeekFields.of(Locale.getDefault());
-                int weekNumber = timeSheet.getEntryDate().get(weekFields.weekOfWeekBasedYear());
-                periodKey = timeSheet.getEntryDate().getYear() + "-W" + String.format("%02d", weekNumber);
-            } else if ("month".equals(periodType)) {
-                periodKey = timeSheet.getEntryDate().format(DateTimeFormatter.ofPattern("yyyy-MM"));
-            } else {
-                periodKey = timeSheet.getEntryDate().format(formatter);
+    private static List<StatisticsDTO.HistogramBucket> histogram(DurationSketch sketch) {
+        TreeMap<Integer, Long> bins = new TreeMap<>();
+        for (int bucket = 0; bucket < sketch.getBucketLimit(); bucket++) {
+            long entries = sketch.getCount(bucket);
+            if (entries > 0) {
+                double value = DurationSketch.valueOf(bucket);
+                int bin = value == 0 ? 0 : value <= 1 ? 1 : 1 + (int) Math.ceil(Math.log(value) / Math.log(2));
+                bins.merge(bin, entries, Long::sum);
             }
+        }
 
-            List<TimeSheetTask> timeSheetTasks = timeSheetTaskRepository.findByTimeSheetId(timeSheet.getId());
-            totalTasks += timeSheetTasks.size();
-
-            for (TimeSheetTask tst : timeSheetTasks) {
-                int duration = tst.getDuration();
-                totalTimeInMinutes += duration;
-
-                if (duration > 0) {
-                    completedTasks++;
-                }
+        List<StatisticsDTO.HistogramBucket> histogram = new ArrayList<>();
+        bins.forEach((bin, entries) -> histogram.add(StatisticsDTO.HistogramBucket.builder()
+                .lowerBound(bin <= 1 ? 0 : Math.pow(2, bin - 2))
+                .upperBound(bin == 0 ? 0 : Math.pow(2, bin - 1))
+                .count(entries)
+                .build()));
+        return histogram;
+    }
 
-                timeDistribution.put(periodKey, timeDistribution.getOrDefault(periodKey, 0) + duration);
-            }
+    private long countTimeSheets(Integer userId, LocalDate startDate, LocalDate endDate) {
+        if (timeEntryColumnStore.isEnabled()) {
+            return timeEntryColumnStore.countTimeSheets(userId, startDate, endDate);
         }
-
-        return StatisticsDTO.PeriodStats.builder()
-                .period(periodType)
-                .timeDistribution(timeDistribution)
-                .totalTimeInMinutes(totalTimeInMinutes)
-                .totalTasks(totalTasks)
-                .completedTasks(completedTasks)
-                .build();
+        return startDate.equals(MIN_DATE) && endDate.equals(MAX_DATE)
+                ? timeSheetRepository.countByUserId(userId)
+                : timeSheetRepository.countByUserIdAndEntryDateBetween(userId, startDate, endDate);
     }
 
     /**
-     * Calcule les statistiques pour une période personnalisée
-     * @param timeSheets Liste des feuilles de temps
+     * Agrège les entrées d'un utilisateur sur une période.
+     * Le filtrage par date et le regroupement par (jour, tâche) sont faits par la base,
+     * toutes les sections sont ensuite calculées en une seule passe sur ces lignes, lues en flux.
+     * Si le magasin en colonnes est activé, la période est agrégée en mémoire.
+     * @param userId ID de l'utilisateur
      * @param startDate Date de début
      * @param endDate Date de fin
-     * @return Statistiques pour la période
+     * @return Agrégateur rempli
      */
-    private StatisticsDTO.PeriodStats calculateCustomPeriodStats(List<TimeSheet> timeSheets, LocalDate startDate, LocalDate endDate) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        Map<String, Integer> timeDistribution = new HashMap<>();
-
-        int totalTimeInMinutes = 0;
-        int totalTasks = 0;
-        int completedTasks = 0;
-
-        for (TimeSheet timeSheet : timeSheets) {
-            if (!timeSheet.getEntryDate().isBefore(startDate) && !timeSheet.getEntryDate().isAfter(endDate)) {
-                String periodKey = timeSheet.getEntryDate().format(formatter);
-
-                List<TimeSheetTask> timeSheetTasks = timeSheetTaskRepository.findByTimeSheetId(timeSheet.getId());
-                totalTasks += timeSheetTasks.size();
-
-                for (TimeSheetTask tst : timeSheetTasks) {
-                    int duration = tst.getDuration();
-                    totalTimeInMinutes += duration;
+    private StatisticsAccumulator aggregateUser(Integer userId, LocalDate startDate, LocalDate endDate) {
+        if (timeEntryColumnStore.isEnabled()) {
+            return timeEntryColumnStore.aggregate(userId, startDate, endDate);
+        }
+        return aggregate(readRollup()
+                ? dailyTaskRollupRepository.streamEntriesByDayAndTaskAndDateRange(userId, startDate, endDate)
+                : statisticsRepository.streamEntriesByDayAndTaskAndDateRange(userId, startDate, endDate));
+    }
 
-                    if (duration > 0) {
-                        completedTasks++;
-                    }
+    /**
+     * Consomme les lignes au fil du curseur JDBC : aucune ligne n'est conservée après son ajout,
+     * la mémoire utilisée ne dépend que du nombre de jours et de tâches distincts.
+     * Doit être appelé dans une transaction (lecture seule) qui garde le curseur ouvert :
+     * c'est le cas des sections lancées par StatisticsSectionExecutor.
+     * @param rows Flux des totaux par jour et par tâche
+     * @return Agrégateur rempli
+     */
+    private StatisticsAccumulator aggregate(Stream<StatisticsRepository.DayTaskTotal> rows) {
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        try (rows) {
+            rows.forEach(accumulator::add);
+        }
+        return accumulator;
+    }
 
-                    timeDistribution.put(periodKey, timeDistribution.getOrDefault(periodKey, 0) + duration);
-                }
-            }
+    /**
+     * Construit le résumé des statistiques d'un utilisateur
+     * @param user Utilisateur
+     * @param timeSheetCount Nombre de feuilles de temps (null si la section n'a pas abouti)
+     * @param accumulator Entrées agrégées (null si la section n'a pas abouti)
+     * @return Résumé des statistiques
+     */
+    private StatisticsDTO.UserStatsSummary buildUserSummary(User user, Long timeSheetCount, StatisticsAccumulator accumulator) {
+        if (accumulator == null) {
+            return StatisticsDTO.UserStatsSummary.builder()
+                    .userId(user.getId())
+                    .userName(user.getPseudo())
+                    .totalTimeSheets(timeSheetCount != null ? timeSheetCount.intValue() : null)
+                    .build();
+        }
+        StatisticsDTO.UserStatsSummary summary = buildUserSummary(user, timeSheetCount != null ? timeSheetCount : 0,
+                accumulator.getEntries(), accumulator.getActiveEntries(), accumulator.getTotalDuration());
+        if (timeSheetCount == null) {
+            summary.setTotalTimeSheets(null);
         }
+        return summary;
+    }
 
-        return StatisticsDTO.PeriodStats.builder()
-                .period("custom")
-                .timeDistribution(timeDistribution)
-                .totalTimeInMinutes(totalTimeInMinutes)
+    /**
+     * Construit le résumé des statistiques à partir des totaux agrégés
+     * @param user Utilisateur
+     * @param timeSheetCount Nombre de feuilles de temps
+     * @param totalTasks Nombre d'entrées
+     * @param completedTasks Nombre d'entrées avec une durée > 0
+     * @param totalTimeInMinutes Durée totale
+     * @return Résumé des statistiques
+     */
+    private StatisticsDTO.UserStatsSummary buildUserSummary(User user, long timeSheetCount,
+                                                            int totalTasks, int completedTasks, int totalTimeInMinutes) {
+        double completionRate = totalTasks > 0 ? (double) completedTasks / totalTasks * 100 : 0;
+
+        return StatisticsDTO.UserStatsSummary.builder()
+                .userId(user.getId())
+                .userName(user.getPseudo())
+                .totalTimeSheets((int) timeSheetCount)
                 .totalTasks(totalTasks)
                 .completedTasks(completedTasks)
+                .totalTimeInMinutes(totalTimeInMinutes)
+                .completionRate(completionRate)
                 .build();
     }
 
@@ -2,8 +2,10 @@ package isis.projet.backend.service;
 
 import isis.projet.backend.entity.Task;
 import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.TimeSheetRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +16,12 @@ public class TaskService {
     @Autowired
     private TaskRepository taskRepository;
 
+    @Autowired
+    private TimeSheetRepository timeSheetRepository;
+
+    @Autowired
+    private TimeEntryColumnStore timeEntryColumnStore;
+
     public List<Task> getAllTasks() {
         return taskRepository.findAll();
     }
@@ -26,15 +34,23 @@ public class TaskService {
         return taskRepository.save(task);
     }
 
+    @Transactional
     public Task updateTask(Task task) {
         if (task.getId() == null || !taskRepository.existsById(task.getId())) {
             throw new RuntimeException("Tâche introuvable");
         }
-        return taskRepository.save(task);
+        Task saved = taskRepository.save(task);
+        // Le nom de la tâche apparaît dans les feuilles : leurs ETags doivent changer
+        timeSheetRepository.incrementVersionsByTaskId(saved.getId());
+        timeEntryColumnStore.evictTaskLabel(saved.getId());
+        return saved;
     }
 
+    @Transactional
     public void deleteTask(Integer id) {
+        timeSheetRepository.incrementVersionsByTaskId(id);
         taskRepository.deleteById(id);
+        timeEntryColumnStore.evictTaskLabel(id);
     }
 
     public List<Task> getTasksByRepetition(String repetition) {
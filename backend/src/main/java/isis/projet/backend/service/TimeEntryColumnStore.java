@@ -0,0 +1,375 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.repository.StatisticsRepository;
+import isis.projet.backend.repository.TaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Magasin en mémoire (optionnel) des entrées de feuilles de temps, par utilisateur, sous forme de colonnes
+ * primitives triées par date : jour epoch, tâche, durée et état "complété".
+ * Les colonnes d'un utilisateur sont chargées à la première demande ; une période quelconque est ensuite
+ * agrégée par recherche dichotomique et simple boucle, sans requête sur les entrées.
+ * Les modifications de TimeSheetService marquent les dates concernées, qui sont relues à la lecture suivante.
+ * Les utilisateurs les moins récemment consultés sont évincés au-delà du budget mémoire.
+ */
+@Component
+public class TimeEntryColumnStore {
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.statistics.column-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.statistics.column-store.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Utilisateurs résidents, du moins au plus récemment consulté (accès protégé par synchronized (residents))
+    private final LinkedHashMap<Integer, Resident> residents = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    // Nom et répétition des tâches, partagés par tous les utilisateurs
+    private final Map<Integer, TaskLabel> taskLabels = new ConcurrentHashMap<>();
+
+    private record TaskLabel(String name, String repetition) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Compte les feuilles de temps d'un utilisateur sur une période
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début
+     * @param endDate Date de fin
+     * @return Nombre de feuilles de temps
+     */
+    public long countTimeSheets(Integer userId, LocalDate startDate, LocalDate endDate) {
+        UserColumns columns = columns(userId);
+        int[] sheetDays = columns.sheetDays;
+        return lowerBound(sheetDays, sheetDays.length, upperDay(endDate))
+                - lowerBound(sheetDays, sheetDays.length, lowerDay(startDate));
+    }
+
+    /**
+     * Agrège les entrées d'un utilisateur sur une période
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début
+     * @param endDate Date de fin
+     * @return Agrégateur rempli
+     */
+    StatisticsAccumulator aggregate(Integer userId, LocalDate startDate, LocalDate endDate) {
+        UserColumns columns = columns(userId);
+        String[] names = new String[columns.dictionary.length];
+        String[] repetitions = new String[columns.dictionary.length];
+        resolveTaskLabels(columns.dictionary, names, repetitions);
+
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        int from = lowerBound(columns.days, columns.size, lowerDay(startDate));
+        int to = lowerBound(columns.days, columns.size, upperDay(endDate));
+        for (int i = from; i < to; i++) {
+            int task = columns.tasks[i];
+            int duration = columns.durations[i];
+            accumulator.add(columns.days[i], columns.dictionary[task], names[task], repetitions[task],
+                    1, duration > 0 ? 1 : 0, duration);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Marque les dates modifiées d'un utilisateur résident ; elles seront relues à la prochaine consultation.
+     * Exécuté avant l'invalidation du cache des statistiques.
+     * @param event Modification de feuille de temps
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onTimeSheetChanged(TimeSheetChangedEvent event) {
+        Resident resident;
+        synchronized (residents) {
+            resident = residents.get(event.userId());
+        }
+        if (resident != null) {
+            resident.pendingDates.addAll(event.entryDates());
+        }
+    }
+
+    /**
+     * Oublie le libellé d'une tâche modifiée ou supprimée
+     * @param taskId ID de la tâche
+     */
+    public void evictTaskLabel(Integer taskId) {
+        taskLabels.remove(taskId);
+    }
+
+    private UserColumns columns(Integer userId) {
+        Resident resident;
+        synchronized (residents) {
+            resident = residents.computeIfAbsent(userId, id -> new Resident());
+        }
+
+        synchronized (resident) {
+            UserColumns previous = resident.columns;
+            if (previous != null && resident.pendingDates.isEmpty()) {
+                return previous;
+            }
+
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(true);
+            UserColumns columns;
+            try {
+                columns = template.execute(status -> previous == null ? load(userId, resident) : refresh(userId, resident, previous));
+            } catch (RuntimeException e) {
+                // Les dates en attente ont pu être perdues : l'utilisateur sera rechargé entièrement
+                synchronized (residents) {
+                    if (residents.remove(userId, resident)) {
+                        residentBytes -= previous != null ? previous.estimatedBytes() : 0;
+                    }
+                }
+                throw e;
+            }
+
+            synchronized (residents) {
+                resident.columns = columns;
+                if (residents.get(userId) == resident) {
+                    residentBytes += columns.estimatedBytes() - (previous != null ? previous.estimatedBytes() : 0);
+                    evictColdUsers(resident);
+                }
+            }
+            return columns;
+        }
+    }
+
+    private UserColumns load(Integer userId, Resident resident) {
+        // Toute modification postérieure à ce point sera relue à la consultation suivante
+        resident.pendingDates.clear();
+
+        ColumnsBuilder builder = new ColumnsBuilder(null);
+        try (Stream<StatisticsRepository.EntryRow> rows = statisticsRepository.streamEntriesByUserId(userId)) {
+            rows.forEach(row -> builder.add(row.getEntryDate(), row.getTaskId(), row.getDuration(), row.getCompleted()));
+        }
+        return builder.build(toEpochDays(statisticsRepository.findTimeSheetDatesByUserId(userId)));
+    }
+
+    private UserColumns refresh(Integer userId, Resident resident, UserColumns previous) {
+        Set<LocalDate> dates = new HashSet<>();
+        for (Iterator<LocalDate> it = resident.pendingDates.iterator(); it.hasNext(); ) {
+            dates.add(it.next());
+            it.remove();
+        }
+        int[] dirtyDays = toEpochDays(new ArrayList<>(dates));
+        Arrays.sort(dirtyDays);
+
+        List<StatisticsRepository.EntryRow> freshRows = statisticsRepository.findEntriesByUserIdAndEntryDates(userId, dates);
+        int[] freshSheetDays = toEpochDays(statisticsRepository.findTimeSheetDatesByUserIdAndEntryDates(userId, dates));
+
+        // Fusion des lignes conservées et des lignes relues, toujours triées par jour
+        ColumnsBuilder builder = new ColumnsBuilder(previous);
+        int fresh = 0;
+        for (int i = 0; i < previous.size; i++) {
+            int day = previous.days[i];
+            while (fresh < freshRows.size() && freshRows.get(fresh).getEntryDate().toEpochDay() <= day) {
+                StatisticsRepository.EntryRow row = freshRows.get(fresh++);
+                builder.add(row.getEntryDate(), row.getTaskId(), row.getDuration(), row.getCompleted());
+            }
+            if (Arrays.binarySearch(dirtyDays, day) < 0) {
+                builder.add(day, previous.dictionary[previous.tasks[i]], previous.durations[i], previous.completed.get(i));
+            }
+        }
+        for (; fresh < freshRows.size(); fresh++) {
+            StatisticsRepository.EntryRow row = freshRows.get(fresh);
+            builder.add(row.getEntryDate(), row.getTaskId(), row.getDuration(), row.getCompleted());
+        }
+
+        int[] sheetDays = new int[previous.sheetDays.length + freshSheetDays.length];
+        int size = 0;
+        for (int day : previous.sheetDays) {
+            if (Arrays.binarySearch(dirtyDays, day) < 0) {
+                sheetDays[size++] = day;
+            }
+        }
+        System.arraycopy(freshSheetDays, 0, sheetDays, size, freshSheetDays.length);
+        sheetDays = Arrays.copyOf(sheetDays, size + freshSheetDays.length);
+        Arrays.sort(sheetDays);
+
+        return builder.build(sheetDays);
+    }
+
+    private void evictColdUsers(Resident current) {
+        Iterator<Map.Entry<Integer, Resident>> it = residents.entrySet().iterator();
+        while (residentBytes > maxBytes && it.hasNext()) {
+            Resident cold = it.next().getValue();
+            if (cold != current) {
+                UserColumns columns = cold.columns;
+                residentBytes -= columns != null ? columns.estimatedBytes() : 0;
+                it.remove();
+            }
+        }
+    }
+
+    private void resolveTaskLabels(int[] taskIds, String[] names, String[] repetitions) {
+        List<Integer> missing = new ArrayList<>();
+        for (int taskId : taskIds) {
+            if (!taskLabels.containsKey(taskId)) {
+                missing.add(taskId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Task task : taskRepository.findAllById(missing)) {
+                taskLabels.put(task.getId(), new TaskLabel(task.getName(), task.getRepetition()));
+            }
+        }
+        for (int i = 0; i < taskIds.length; i++) {
+            TaskLabel label = taskLabels.get(taskIds[i]);
+            names[i] = label != null ? label.name() : null;
+            repetitions[i] = label != null ? label.repetition() : null;
+        }
+    }
+
+    private static int lowerDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : Integer.MIN_VALUE;
+    }
+
+    private static int upperDay(LocalDate date) {
+        // Premier jour exclu
+        return date != null ? (int) date.toEpochDay() + 1 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Premier indice dont le jour est supérieur ou égal à day
+     */
+    private static int lowerBound(int[] days, int size, int day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] toEpochDays(List<LocalDate> dates) {
+        int[] days = new int[dates.size()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = (int) dates.get(i).toEpochDay();
+        }
+        return days;
+    }
+
+    /**
+     * Utilisateur résident : colonnes courantes et dates modifiées depuis leur construction
+     */
+    private static final class Resident {
+        private volatile UserColumns columns;
+        private final Set<LocalDate> pendingDates = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Colonnes immuables d'un utilisateur. Les tâches sont stockées par indice dans un dictionnaire propre à l'utilisateur.
+     */
+    private static final class UserColumns {
+        private final int[] days;
+        private final int[] tasks;
+        private final int[] durations;
+        private final BitSet completed;
+        private final int size;
+        private final int[] dictionary;
+        private final int[] sheetDays;
+
+        private UserColumns(int[] days, int[] tasks, int[] durations, BitSet completed, int size,
+                            int[] dictionary, int[] sheetDays) {
+            this.days = days;
+            this.tasks = tasks;
+            this.durations = durations;
+            this.completed = completed;
+            this.size = size;
+            this.dictionary = dictionary;
+            this.sheetDays = sheetDays;
+        }
+
+        long estimatedBytes() {
+            return 128L + 12L * days.length + completed.size() / 8 + 4L * dictionary.length + 4L * sheetDays.length;
+        }
+    }
+
+    /**
+     * Construction des colonnes, ligne par ligne, dans l'ordre des jours
+     */
+    private static final class ColumnsBuilder {
+        private int[] days = new int[64];
+        private int[] tasks = new int[64];
+        private int[] durations = new int[64];
+        private final BitSet completed = new BitSet();
+        private int size;
+        private int[] dictionary;
+        private int dictionarySize;
+        private final Map<Integer, Integer> dictionaryIndex = new HashMap<>();
+
+        ColumnsBuilder(UserColumns base) {
+            dictionary = base != null ? Arrays.copyOf(base.dictionary, Math.max(8, base.dictionary.length)) : new int[8];
+            if (base != null) {
+                for (int i = 0; i < base.dictionary.length; i++) {
+                    dictionaryIndex.put(base.dictionary[i], i);
+                }
+                dictionarySize = base.dictionary.length;
+                days = new int[Math.max(64, base.size)];
+                tasks = new int[days.length];
+                durations = new int[days.length];
+            }
+        }
+
+        void add(LocalDate date, Integer taskId, Integer duration, Boolean completed) {
+            add((int) date.toEpochDay(), taskId, duration != null ? duration : 0, Boolean.TRUE.equals(completed));
+        }
+
+        void add(int day, int taskId, int duration, boolean isCompleted) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                tasks = Arrays.copyOf(tasks, size * 2);
+                durations = Arrays.copyOf(durations, size * 2);
+            }
+            Integer task = dictionaryIndex.get(taskId);
+            if (task == null) {
+                if (dictionarySize == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+                }
+                task = dictionarySize;
+                dictionary[dictionarySize++] = taskId;
+                dictionaryIndex.put(taskId, task);
+            }
+            days[size] = day;
+            tasks[size] = task;
+            durations[size] = duration;
+            completed.set(size, isCompleted);
+            size++;
+        }
+
+        UserColumns build(int[] sheetDays) {
+            return new UserColumns(Arrays.copyOf(days, size), Arrays.copyOf(tasks, size), Arrays.copyOf(durations, size),
+                    completed, size, Arrays.copyOf(dictionary, dictionarySize), sheetDays);
+        }
+    }
+}
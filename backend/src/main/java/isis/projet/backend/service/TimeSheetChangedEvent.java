@@ -0,0 +1,23 @@
+package isis.projet.backend.service;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Événement publié par TimeSheetService à chaque modification d'une feuille de temps
+ * ou de ses tâches. Les écouteurs le reçoivent après la validation de la transaction.
+ * @param type Type de modification
+ * @param timeSheetId ID de la feuille de temps
+ * @param userId ID du propriétaire de la feuille
+ * @param entryDates Dates concernées (ancienne et nouvelle date si la feuille a été déplacée)
+ */
+public record TimeSheetChangedEvent(Type type, Integer timeSheetId, Integer userId, Set<LocalDate> entryDates) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        TASKS_CHANGED,
+        SHARED
+    }
+}
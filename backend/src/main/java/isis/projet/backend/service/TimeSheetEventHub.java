@@ -0,0 +1,271 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.TimeSheetDTO;
+import isis.projet.backend.repository.TimeSheetRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion en continu (Server-Sent Events) des modifications de feuilles de temps.
+ * Chaque abonné reçoit les modifications de ses propres feuilles et de celles partagées avec lui
+ * (directement ou via un groupe), une fois la transaction validée.
+ * Une connexion inactive n'occupe aucun thread : la requête est asynchrone et les envois sont faits
+ * par des threads virtuels, au plus un par abonné à la fois. Chaque abonné a une file bornée ;
+ * les modifications d'une même feuille y sont fusionnées et, si la file est pleine, la plus ancienne
+ * est abandonnée et le client est invité à recharger ses données (événement resync).
+ */
+@Component
+public class TimeSheetEventHub {
+
+    static final String EVENT_CHANGE = "timesheet";
+    static final String EVENT_READY = "ready";
+    static final String EVENT_RESYNC = "resync";
+
+    private static final Object READY = new Object();
+    private static final Object HEARTBEAT = new Object();
+
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("timesheet-stream-", 0).factory());
+
+    private final TimeSheetRepository timeSheetRepository;
+    private final Duration timeout;
+    private final int queueCapacity;
+    private final int maxPerUser;
+
+    public TimeSheetEventHub(TimeSheetRepository timeSheetRepository,
+                             @Value("${app.stream.timeout:PT30M}") Duration timeout,
+                             @Value("${app.stream.queue-capacity:64}") int queueCapacity,
+                             @Value("${app.stream.max-per-user:5}") int maxPerUser) {
+        this.timeSheetRepository = timeSheetRepository;
+        this.timeout = timeout;
+        this.queueCapacity = queueCapacity;
+        this.maxPerUser = maxPerUser;
+    }
+
+    /**
+     * File bornée d'un abonné. Un élément de même clé remplace l'élément en attente (placé en fin de file) ;
+     * au-delà de la capacité, le plus ancien est abandonné et la file est marquée en débordement.
+     */
+    static final class EventQueue<T> {
+
+        private final LinkedHashMap<Object, T> items = new LinkedHashMap<>();
+        private final int capacity;
+        private boolean overflowed;
+
+        EventQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(Object key, T item) {
+            items.remove(key);
+            items.put(key, item);
+            if (items.size() > capacity) {
+                Iterator<T> oldest = items.values().iterator();
+                oldest.next();
+                oldest.remove();
+                overflowed = true;
+            }
+        }
+
+        synchronized T poll() {
+            Iterator<T> first = items.values().iterator();
+            if (!first.hasNext()) {
+                return null;
+            }
+            T item = first.next();
+            first.remove();
+            return item;
+        }
+
+        synchronized boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        /**
+         * Indique si des éléments ont été abandonnés depuis le dernier appel
+         */
+        synchronized boolean takeOverflow() {
+            boolean result = overflowed;
+            overflowed = false;
+            return result;
+        }
+    }
+
+    private final class Subscriber {
+
+        final Integer userId;
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        final EventQueue<SseEmitter.SseEventBuilder> queue = new EventQueue<>(queueCapacity);
+        final AtomicBoolean sending = new AtomicBoolean();
+        final long since = System.nanoTime();
+
+        Subscriber(Integer userId) {
+            this.userId = userId;
+        }
+
+        void offer(Object key, SseEmitter.SseEventBuilder event) {
+            queue.offer(key, event);
+            if (sending.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    if (queue.takeOverflow()) {
+                        emitter.send(SseEmitter.event().name(EVENT_RESYNC).data(""));
+                    }
+                    SseEmitter.SseEventBuilder event = queue.poll();
+                    if (event != null) {
+                        emitter.send(event);
+                        continue;
+                    }
+                    sending.set(false);
+                    // Un élément ajouté entre poll() et set(false) n'a pas relancé d'envoi
+                    if (queue.isEmpty() || !sending.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client déconnecté : la connexion est libérée
+                remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Ouvre un flux pour un utilisateur. Au-delà de max-per-user flux, le plus ancien est fermé.
+     * @param userId ID de l'utilisateur connecté
+     * @return Flux d'événements, dont le premier (ready) invite le client à charger ses données
+     */
+    public SseEmitter subscribe(Integer userId) {
+        Subscriber subscriber = new Subscriber(userId);
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+
+        Set<Subscriber> userSubscribers = subscribers.compute(userId, (id, set) -> {
+            Set<Subscriber> result = set != null ? set : ConcurrentHashMap.newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+        if (userSubscribers.size() > maxPerUser) {
+            userSubscribers.stream()
+                    .min(Comparator.comparingLong(s -> s.since))
+                    .ifPresent(oldest -> {
+                        remove(oldest);
+                        oldest.emitter.complete();
+                    });
+        }
+
+        subscriber.offer(READY, SseEmitter.event().name(EVENT_READY).data("").reconnectTime(5000));
+        return subscriber.emitter;
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Nombre de flux ouverts
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Détermine les destinataires d'une modification (propriétaire, utilisateurs et membres des groupes
+     * avec lesquels la feuille est partagée) puis la diffuse après validation de la transaction.
+     * Les destinataires sont résolus dans la transaction, avant la suppression éventuelle des partages.
+     * @param event Modification de feuille de temps
+     */
+    @EventListener
+    public void onTimeSheetChanged(TimeSheetChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Set<Integer> audience = new HashSet<>();
+        audience.add(event.userId());
+        audience.addAll(timeSheetRepository.findShareAudienceUserIds(event.timeSheetId()));
+        audience.retainAll(subscribers.keySet());
+        if (audience.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(event, audience);
+                }
+            });
+        } else {
+            publish(event, audience);
+        }
+    }
+
+    private void publish(TimeSheetChangedEvent event, Set<Integer> audience) {
+        TimeSheetDTO.TimeSheetChange change = TimeSheetDTO.TimeSheetChange.builder()
+                .type(event.type().name())
+                .timeSheetId(event.timeSheetId())
+                .ownerId(event.userId())
+                .entryDates(event.entryDates())
+                .build();
+        for (Integer userId : audience) {
+            for (Subscriber subscriber : subscribers.getOrDefault(userId, Set.of())) {
+                // Chaque envoi a son propre builder : un builder ne peut être envoyé qu'une fois
+                subscriber.offer(event.timeSheetId(), SseEmitter.event()
+                        .id(Long.toString(sequence.incrementAndGet()))
+                        .name(EVENT_CHANGE)
+                        .data(change, MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    /**
+     * Commentaire périodique : garde les connexions inactives ouvertes à travers les proxys
+     * et détecte les clients déconnectés
+     */
+    @Scheduled(fixedDelayString = "${app.stream.heartbeat:PT25S}")
+    public void heartbeat() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.offer(HEARTBEAT, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+        sender.shutdownNow();
+    }
+}
@@ -1,5 +1,6 @@
 package isis.projet.backend.service;
 
+import isis.projet.backend.dto.TimeSheetDTO;
 import isis.projet.backend.entity.*;
 import isis.projet.backend.repository.TimeSheetRepository;
 import isis.projet.backend.repository.TimeSheetShareGroupRepository;
@@ -8,15 +9,44 @@ import isis.projet.backend.repository.TimeSheetTaskRepository;
 import isis.projet.backend.repository.TaskRepository;
 import isis.projet.backend.repository.UserRepository;
 import isis.projet.backend.repository.GroupRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
 
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
@@ -34,16 +64,48 @@ import com.itextpdf.text.Element;
 import com.itextpdf.text.Font;
 import com.itextpdf.text.FontFactory;
 import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 import java.io.ByteArrayOutputStream;
 import java.time.format.DateTimeFormatter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 
 @Service
 public class TimeSheetService {
 
+    private static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int EXPAND_BATCH_SIZE = 500;
+    private static final String EXPAND_TASKS = "tasks";
+    private static final String EXPAND_SHARES = "shares";
+    private static final int MAX_BATCH_OPERATIONS = 500;
+    private static final int MAX_SHARE_BATCH = 500;
+    private static final int CSV_BUFFER_SIZE = 16 * 1024;
+    private static final int PDF_CHUNK_ROWS = 200;
+    private static final int EXPORT_PROGRESS_ROWS = 1000;
+    private static final int XLSX_WINDOW_ROWS = 200;
+    private static final int XLSX_MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final String[] EXPORT_COLUMNS =
+            {"ID", "Date", "Icon", "UserID", "TaskID", "TaskName", "Duration", "StartDate", "EndDate"};
+    private static final JsonFactory NDJSON_FACTORY = new JsonFactory();
+
+    // Polices et couleur partagées par tous les exports PDF (créées une seule fois)
+    private static final Font PDF_TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.WHITE);
+    private static final Font PDF_HEADER_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.WHITE);
+    private static final Font PDF_CELL_FONT = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
+    private static final BaseColor PDF_PRIMARY_COLOR = new BaseColor(26, 35, 126);
+
     @Autowired
     private TimeSheetRepository timeSheetRepository;
 
@@ -65,6 +127,21 @@ public class TimeSheetService {
     @Autowired
     private GroupRepository groupRepository;
 
+    @Autowired
+    private StatisticsRollupService statisticsRollupService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TimerEventBuffer timerEventBuffer;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     /**
      * Récupère toutes les feuilles de temps d'un utilisateur
      * @param userId ID de l'utilisateur
@@ -74,12 +151,295 @@ public class TimeSheetService {
         return timeSheetRepository.findByUserId(userId);
     }
 
+    /**
+     * Récupère les feuilles de temps d'un utilisateur sur une période.
+     * Le filtrage par date est fait par la base.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @return Liste des feuilles de temps
+     */
+    public List<TimeSheet> getTimeSheetsByUserIdAndPeriod(Integer userId, LocalDate startDate, LocalDate endDate) {
+        if (startDate != null && endDate != null) {
+            return timeSheetRepository.findByUserIdAndEntryDateBetween(userId, startDate, endDate);
+        } else if (startDate != null) {
+            return timeSheetRepository.findByUserIdAndEntryDateGreaterThanEqual(userId, startDate);
+        } else if (endDate != null) {
+            return timeSheetRepository.findByUserIdAndEntryDateLessThanEqual(userId, endDate);
+        }
+        return timeSheetRepository.findByUserId(userId);
+    }
+
+    /**
+     * Liste les feuilles de temps d'un utilisateur sur une période, de la plus récente à la plus ancienne.
+     * Les totaux des tâches sont calculés par la base ; tâches et partages ne sont chargés que sur demande.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param expand Détails à inclure ("tasks", "shares", séparés par des virgules), optionnel
+     * @return Résumés des feuilles de temps
+     */
+    public List<TimeSheetDTO.TimeSheetSummary> listTimeSheetsByUserId(Integer userId, LocalDate startDate, LocalDate endDate, String expand) {
+        Set<String> expansions = parseExpand(expand);
+        timerEventBuffer.flushUser(userId);
+        LocalDate from = startDate != null ? startDate : MIN_DATE;
+        LocalDate to = endDate != null ? endDate : MAX_DATE;
+        return toSummaries(timeSheetRepository.findSummariesByUserId(userId, from, to), expansions);
+    }
+
+    /**
+     * Liste les feuilles de temps d'une date
+     * @param date Date
+     * @param expand Détails à inclure, optionnel
+     * @return Résumés des feuilles de temps
+     */
+    public List<TimeSheetDTO.TimeSheetSummary> listTimeSheetsByDate(LocalDate date, String expand) {
+        Set<String> expansions = parseExpand(expand);
+        // Feuilles d'autres propriétaires : tout le tampon du chronomètre est écrit
+        timerEventBuffer.flush();
+        return toSummaries(timeSheetRepository.findSummariesByEntryDate(date), expansions);
+    }
+
+    /**
+     * Liste les feuilles de temps partagées avec un utilisateur
+     * @param userId ID de l'utilisateur
+     * @param expand Détails à inclure, optionnel
+     * @return Résumés des feuilles de temps partagées
+     */
+    public List<TimeSheetDTO.TimeSheetSummary> listTimeSheetsSharedWithUser(Integer userId, String expand) {
+        Set<String> expansions = parseExpand(expand);
+        // Feuilles d'autres propriétaires : tout le tampon du chronomètre est écrit
+        timerEventBuffer.flush();
+        return toSummaries(timeSheetRepository.findSummariesSharedWithUser(userId), expansions);
+    }
+
+    /**
+     * Liste les feuilles de temps partagées avec un groupe
+     * @param groupId ID du groupe
+     * @param expand Détails à inclure, optionnel
+     * @return Résumés des feuilles de temps partagées
+     */
+    public List<TimeSheetDTO.TimeSheetSummary> listTimeSheetsSharedWithGroup(Integer groupId, String expand) {
+        Set<String> expansions = parseExpand(expand);
+        // Feuilles d'autres propriétaires : tout le tampon du chronomètre est écrit
+        timerEventBuffer.flush();
+        return toSummaries(timeSheetRepository.findSummariesSharedWithGroup(groupId), expansions);
+    }
+
+    /**
+     * Récupère une page de feuilles de temps d'un utilisateur, de la plus récente à la plus ancienne.
+     * La pagination se fait par clé sur (entryDate, id) : le coût d'une page ne dépend pas
+     * du nombre de feuilles qui la précèdent.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param limit Taille de la page (bornée à MAX_PAGE_SIZE)
+     * @param cursor Curseur renvoyé par la page précédente, null pour la première page
+     * @param expand Détails à inclure, optionnel
+     * @return Page de feuilles de temps et curseur de la page suivante
+     */
+    public TimeSheetDTO.TimeSheetPage getTimeSheetPageByUserId(Integer userId, LocalDate startDate, LocalDate endDate,
+                                                               int limit, String cursor, String expand) {
+        Set<String> expansions = parseExpand(expand);
+        timerEventBuffer.flushUser(userId);
+        if (limit <= 0) {
+            throw new RuntimeException("La limite doit être positive");
+        }
+        int size = Math.min(limit, MAX_PAGE_SIZE);
+        LocalDate from = startDate != null ? startDate : MIN_DATE;
+        LocalDate to = endDate != null ? endDate : MAX_DATE;
+
+        // Une ligne de plus que la page pour savoir s'il existe une page suivante
+        List<TimeSheetRepository.TimeSheetSummaryRow> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = timeSheetRepository.findFirstPageByUserId(userId, from, to, Limit.of(size + 1));
+        } else {
+            TimeSheet after = decodeCursor(cursor);
+            rows = timeSheetRepository.findPageByUserIdAfter(userId, from, to, after.getEntryDate(), after.getId(), Limit.of(size + 1));
+        }
+
+        String next = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            next = encodeCursor(rows.get(size - 1));
+        }
+        return TimeSheetDTO.TimeSheetPage.builder()
+                .items(toSummaries(rows, expansions))
+                .next(next)
+                .build();
+    }
+
+    private static String encodeCursor(TimeSheetRepository.TimeSheetSummaryRow last) {
+        String position = last.getEntryDate() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static TimeSheet decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            TimeSheet after = new TimeSheet();
+            after.setEntryDate(LocalDate.parse(position.substring(0, separator)));
+            after.setId(Integer.valueOf(position.substring(separator + 1)));
+            return after;
+        } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new RuntimeException("Curseur de pagination invalide");
+        }
+    }
+
+    private static Set<String> parseExpand(String expand) {
+        Set<String> expansions = new HashSet<>();
+        if (expand == null || expand.isBlank()) {
+            return expansions;
+        }
+        for (String expansion : expand.split(",")) {
+            String name = expansion.trim();
+            if (!EXPAND_TASKS.equals(name) && !EXPAND_SHARES.equals(name)) {
+                throw new RuntimeException("Paramètre expand inconnu : " + name + " (attendu : tasks, shares)");
+            }
+            expansions.add(name);
+        }
+        return expansions;
+    }
+
+    /**
+     * Construit les résumés et, si demandé, charge tâches et partages de toutes les feuilles
+     * en une requête par collection (par lots d'ID) au lieu d'un chargement paresseux par feuille
+     */
+    private List<TimeSheetDTO.TimeSheetSummary> toSummaries(List<TimeSheetRepository.TimeSheetSummaryRow> rows, Set<String> expansions) {
+        Map<Integer, TimeSheetDTO.TimeSheetSummary> summaries = new LinkedHashMap<>();
+        for (TimeSheetRepository.TimeSheetSummaryRow row : rows) {
+            summaries.put(row.getId(), TimeSheetDTO.TimeSheetSummary.builder()
+                    .id(row.getId())
+                    .version(row.getVersion())
+                    .entryDate(row.getEntryDate())
+                    .icon(row.getIcon())
+                    .title(row.getTitle())
+                    .startDate(row.getStartDate())
+                    .endDate(row.getEndDate())
+                    .startTime(row.getStartTime())
+                    .endTime(row.getEndTime())
+                    .taskCount(row.getTaskCount())
+                    .completedTaskCount(row.getCompletedTaskCount())
+                    .totalDuration(row.getTotalDuration())
+                    .timeSheetTasks(expansions.contains(EXPAND_TASKS) ? new ArrayList<>() : null)
+                    .sharedWithUsers(expansions.contains(EXPAND_SHARES) ? new ArrayList<>() : null)
+                    .sharedWithGroups(expansions.contains(EXPAND_SHARES) ? new ArrayList<>() : null)
+                    .build());
+        }
+        if (summaries.isEmpty() || expansions.isEmpty()) {
+            return new ArrayList<>(summaries.values());
+        }
+
+        List<Integer> ids = new ArrayList<>(summaries.keySet());
+        for (int from = 0; from < ids.size(); from += EXPAND_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + EXPAND_BATCH_SIZE, ids.size()));
+            if (expansions.contains(EXPAND_TASKS)) {
+                for (TimeSheetRepository.TaskLineRow line : timeSheetRepository.findTaskLinesByTimeSheetIds(batch)) {
+                    summaries.get(line.getTimeSheetId()).getTimeSheetTasks().add(TimeSheetDTO.TaskLine.builder()
+                            .timeSheetId(line.getTimeSheetId())
+                            .taskId(line.getTaskId())
+                            .taskName(line.getTaskName())
+                            .duration(line.getDuration())
+                            .completed(line.getCompleted())
+                            .build());
+                }
+            }
+            if (expansions.contains(EXPAND_SHARES)) {
+                for (TimeSheetRepository.ShareRow share : timeSheetRepository.findUserSharesByTimeSheetIds(batch)) {
+                    summaries.get(share.getTimeSheetId()).getSharedWithUsers().add(
+                            new TimeSheetDTO.UserShare(share.getTimeSheetId(), share.getTargetId(), share.getAccessLevel()));
+                }
+                for (TimeSheetRepository.ShareRow share : timeSheetRepository.findGroupSharesByTimeSheetIds(batch)) {
+                    summaries.get(share.getTimeSheetId()).getSharedWithGroups().add(
+                            new TimeSheetDTO.GroupShare(share.getTimeSheetId(), share.getTargetId(), share.getAccessLevel()));
+                }
+            }
+        }
+        return new ArrayList<>(summaries.values());
+    }
+
+    /**
+     * Récupère une feuille de temps avec son propriétaire et ses partages de groupe,
+     * en une requête, pour la vérification des droits
+     * @param id ID de la feuille de temps
+     * @return Feuille de temps
+     */
+    public Optional<TimeSheet> getTimeSheetForAuthorization(Integer id) {
+        return timeSheetRepository.findForAuthorizationById(id);
+    }
+
+    /**
+     * ETag d'une feuille de temps, obtenu par une simple lecture de sa version
+     * @param id ID de la feuille de temps
+     * @return ETag, vide si la feuille n'existe pas
+     */
+    public Optional<String> getTimeSheetETag(Integer id) {
+        timerEventBuffer.flushTimeSheet(id);
+        return timeSheetRepository.findVersionById(id).map(version -> eTagOf(id, version));
+    }
+
+    /**
+     * ETag fort d'une feuille de temps : il change à chaque modification de la feuille, de ses tâches ou de ses partages
+     */
+    public static String eTagOf(Integer id, Long version) {
+        return "\"ts-" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Version désignée par un ETag de feuille de temps
+     * @return Version, null si l'ETag ne désigne pas cette feuille
+     */
+    public static Long versionOf(Integer id, String eTag) {
+        String prefix = "\"ts-" + id + "-";
+        if (eTag == null || !eTag.startsWith(prefix) || !eTag.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(eTag.substring(prefix.length(), eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ETag de la liste des feuilles d'un utilisateur (une requête d'agrégat, sans charger les feuilles)
+     */
+    public String getTimeSheetListETag(Integer userId, LocalDate startDate, LocalDate endDate,
+                                       String expand, Integer limit, String cursor) {
+        timerEventBuffer.flushUser(userId);
+        TimeSheetRepository.ListVersion version = timeSheetRepository.findListVersionByUserId(userId,
+                startDate != null ? startDate : MIN_DATE, endDate != null ? endDate : MAX_DATE);
+        return listETag("user", version, userId, startDate, endDate, expand, limit, cursor);
+    }
+
+    public String getTimeSheetsByDateETag(LocalDate date, String expand) {
+        timerEventBuffer.flush();
+        return listETag("date", timeSheetRepository.findListVersionByEntryDate(date), date, expand);
+    }
+
+    public String getTimeSheetsSharedWithUserETag(Integer userId, String expand) {
+        timerEventBuffer.flush();
+        return listETag("shared", timeSheetRepository.findListVersionSharedWithUser(userId), userId, expand);
+    }
+
+    public String getTimeSheetsSharedWithGroupETag(Integer groupId, String expand) {
+        timerEventBuffer.flush();
+        return listETag("group", timeSheetRepository.findListVersionSharedWithGroup(groupId), groupId, expand);
+    }
+
+    private static String listETag(String scope, TimeSheetRepository.ListVersion version, Object... parameters) {
+        return "\"" + scope + "-" + version.getSheets() + "-" + version.getVersionSum() + "-" + version.getMaxId()
+                + "-" + Integer.toHexString(Objects.hash(parameters)) + "\"";
+    }
+
     /**
      * Récupère une feuille de temps par son ID
      * @param id ID de la feuille de temps
      * @return Feuille de temps
      */
     public Optional<TimeSheet> getTimeSheetById(Integer id) {
+        timerEventBuffer.flushTimeSheet(id);
         return timeSheetRepository.findById(id);
     }
 
@@ -91,6 +451,8 @@ public class TimeSheetService {
      */
     public TimeSheet createTimeSheet(TimeSheet timeSheet, User user) {
         timeSheet.setUser(user);
+        // Une version envoyée par le client ferait passer la feuille pour existante
+        timeSheet.setVersion(null);
         if (timeSheet.getEntryDate() == null) {
             timeSheet.setEntryDate(LocalDate.now());
         }
@@ -103,7 +465,9 @@ public class TimeSheetService {
             timeSheet.setEndDate(LocalDate.now().plusWeeks(2)); // Par défaut 2 semaines
         }
 
-        return timeSheetRepository.save(timeSheet);
+        TimeSheet saved = timeSheetRepository.save(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.CREATED, saved, saved.getEntryDate());
+        return saved;
     }
 
     /**
@@ -111,7 +475,20 @@ public class TimeSheetService {
      * @param updatedTimeSheet Feuille de temps à mettre à jour
      * @return Feuille de temps mise à jour
      */
+    @Transactional
     public TimeSheet updateTimeSheet(TimeSheet updatedTimeSheet) {
+        return updateTimeSheet(updatedTimeSheet, null);
+    }
+
+    /**
+     * Met à jour une feuille de temps si elle est toujours dans la version attendue (If-Match)
+     * @param updatedTimeSheet Feuille de temps à mettre à jour
+     * @param expectedVersion Version attendue, null pour ne pas vérifier
+     * @return Feuille de temps mise à jour, avec sa nouvelle version
+     * @throws ObjectOptimisticLockingFailureException si la feuille a été modifiée entre-temps
+     */
+    @Transactional
+    public TimeSheet updateTimeSheet(TimeSheet updatedTimeSheet, Long expectedVersion) {
         if (updatedTimeSheet.getId() == null || !timeSheetRepository.existsById(updatedTimeSheet.getId())) {
             throw new RuntimeException("Feuille de temps introuvable");
         }
@@ -121,6 +498,16 @@ public class TimeSheetService {
             throw new RuntimeException("Feuille de temps introuvable");
         }
         TimeSheet existingTimeSheet = optionalExisting.get();
+        if (expectedVersion != null && !expectedVersion.equals(existingTimeSheet.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(TimeSheet.class, existingTimeSheet.getId());
+        }
+
+        // Déplacer les agrégats statistiques si la date de la feuille change
+        LocalDate previousEntryDate = existingTimeSheet.getEntryDate();
+        if (updatedTimeSheet.getEntryDate() != null && !updatedTimeSheet.getEntryDate().equals(previousEntryDate)) {
+            statisticsRollupService.timeSheetMoved(existingTimeSheet.getUser().getId(), previousEntryDate,
+                    updatedTimeSheet.getEntryDate(), timeSheetTaskRepository.findByTimeSheetId(existingTimeSheet.getId()));
+        }
 
         // Mettre à jour les champs autorisés tout en préservant l'association avec l'utilisateur
         existingTimeSheet.setEntryDate(updatedTimeSheet.getEntryDate());
@@ -134,14 +521,25 @@ public class TimeSheetService {
         existingTimeSheet.setEndTime(updatedTimeSheet.getEndTime());
 
         // Sauvegarder et retourner la feuille de temps mise à jour
-        return timeSheetRepository.save(existingTimeSheet);
+        // (flush immédiat : la nouvelle version est renvoyée dans l'ETag, et la vérification de version a lieu ici)
+        TimeSheet saved = timeSheetRepository.saveAndFlush(existingTimeSheet);
+        publishChange(TimeSheetChangedEvent.Type.UPDATED, saved, previousEntryDate, saved.getEntryDate());
+        return saved;
     }
 
     /**
      * Supprime une feuille de temps
      * @param id ID de la feuille de temps
      */
+    @Transactional
     public void deleteTimeSheet(Integer id) {
+        Optional<TimeSheet> timeSheet = timeSheetRepository.findById(id);
+        if (timeSheet.isPresent()) {
+            for (TimeSheetTask entry : timeSheetTaskRepository.findByTimeSheetId(id)) {
+                statisticsRollupService.entryRemoved(timeSheet.get().getUser().getId(), timeSheet.get().getEntryDate(), entry);
+            }
+            publishChange(TimeSheetChangedEvent.Type.DELETED, timeSheet.get(), timeSheet.get().getEntryDate());
+        }
         timeSheetRepository.deleteById(id);
     }
 
@@ -152,6 +550,7 @@ public class TimeSheetService {
      * @param duration Durée en minutes
      * @return Tâche ajoutée à la feuille de temps
      */
+    @Transactional
     public TimeSheetTask addTaskToTimeSheet(Integer timeSheetId, Integer taskId, Integer duration) {
         TimeSheet timeSheet = timeSheetRepository.findById(timeSheetId)
                 .orElseThrow(() -> new RuntimeException("TimeSheet introuvable"));
@@ -167,7 +566,11 @@ public class TimeSheetService {
         timeSheetTask.setTimeSheet(timeSheet);
         timeSheetTask.setTask(task);
 
-        return timeSheetTaskRepository.save(timeSheetTask);
+        TimeSheetTask saved = timeSheetTaskRepository.save(timeSheetTask);
+        statisticsRollupService.entryAdded(timeSheet.getUser().getId(), timeSheet.getEntryDate(), saved);
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, timeSheet.getEntryDate());
+        return saved;
     }
 
 
@@ -204,6 +607,7 @@ public class TimeSheetService {
      * @param userId ID de l'utilisateur
      * @param accessLevel Niveau d'accès (READ, WRITE)
      */
+    @Transactional
     public void shareTimeSheetWithUser(Integer timeSheetId, Integer userId, String accessLevel) {
         TimeSheet timeSheet = timeSheetRepository.findById(timeSheetId)
                 .orElseThrow(() -> new RuntimeException("TimeSheet introuvable"));
@@ -228,6 +632,8 @@ public class TimeSheetService {
 
             timeSheetShareUserRepository.save(shareUser);
         }
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.SHARED, timeSheet, timeSheet.getEntryDate());
     }
 
     /**
@@ -236,6 +642,7 @@ public class TimeSheetService {
      * @param groupId ID du groupe
      * @param accessLevel Niveau d'accès (READ, WRITE)
      */
+    @Transactional
     public void shareTimeSheetWithGroup(Integer timeSheetId, Integer groupId, String accessLevel) {
         TimeSheet timeSheet = timeSheetRepository.findById(timeSheetId)
                 .orElseThrow(() -> new RuntimeException("TimeSheet introuvable"));
@@ -260,6 +667,116 @@ public class TimeSheetService {
 
             timeSheetShareGroupRepository.save(shareGroup);
         }
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.SHARED, timeSheet, timeSheet.getEntryDate());
+    }
+
+    /**
+     * Partage plusieurs feuilles avec plusieurs utilisateurs et/ou groupes en quelques instructions ensemblistes,
+     * quel que soit le nombre de paires : mise à jour du niveau d'accès des partages existants puis
+     * INSERT ... SELECT des partages manquants, par table de partage. Les droits sont vérifiés par l'appelant.
+     * @param timeSheetIds IDs des feuilles de temps
+     * @param userIds IDs des utilisateurs (optionnel)
+     * @param groupIds IDs des groupes (optionnel)
+     * @param accessLevel Niveau d'accès (READ, WRITE)
+     * @return Nombre de partages créés et mis à jour
+     */
+    @Transactional
+    public TimeSheetDTO.ShareBatchResult shareTimeSheets(Collection<Integer> timeSheetIds, Collection<Integer> userIds,
+                                                          Collection<Integer> groupIds, String accessLevel) {
+        if (accessLevel == null || accessLevel.isBlank()) {
+            throw new RuntimeException("Le niveau d'accès est requis");
+        }
+        ShareTargets targets = shareTargets(timeSheetIds, userIds, groupIds);
+
+        int created = 0;
+        int updated = 0;
+        if (!targets.users().isEmpty()) {
+            updated += timeSheetShareUserRepository.updateAccessLevel(targets.sheetIds(), targets.users(), accessLevel);
+            created += timeSheetShareUserRepository.insertMissing(targets.sheetIds(), targets.users(), accessLevel);
+        }
+        if (!targets.groups().isEmpty()) {
+            updated += timeSheetShareGroupRepository.updateAccessLevel(targets.sheetIds(), targets.groups(), accessLevel);
+            created += timeSheetShareGroupRepository.insertMissing(targets.sheetIds(), targets.groups(), accessLevel);
+        }
+
+        if (created + updated > 0) {
+            timeSheetRepository.incrementVersions(targets.sheetIds());
+            for (TimeSheet timeSheet : targets.sheets()) {
+                publishChange(TimeSheetChangedEvent.Type.SHARED, timeSheet, timeSheet.getEntryDate());
+            }
+        }
+        return TimeSheetDTO.ShareBatchResult.builder()
+                .timeSheets(targets.sheetIds().size())
+                .created(created)
+                .updated(updated)
+                .build();
+    }
+
+    /**
+     * Retire les partages de plusieurs feuilles avec plusieurs utilisateurs et/ou groupes (une suppression
+     * par table de partage). Les droits sont vérifiés par l'appelant.
+     * @param timeSheetIds IDs des feuilles de temps
+     * @param userIds IDs des utilisateurs (optionnel)
+     * @param groupIds IDs des groupes (optionnel)
+     * @return Nombre de partages supprimés
+     */
+    @Transactional
+    public TimeSheetDTO.ShareBatchResult revokeTimeSheetShares(Collection<Integer> timeSheetIds, Collection<Integer> userIds,
+                                                                Collection<Integer> groupIds) {
+        ShareTargets targets = shareTargets(timeSheetIds, userIds, groupIds);
+
+        // Publié avant la suppression : les destinataires du flux incluent encore les utilisateurs retirés
+        for (TimeSheet timeSheet : targets.sheets()) {
+            publishChange(TimeSheetChangedEvent.Type.SHARED, timeSheet, timeSheet.getEntryDate());
+        }
+
+        int removed = 0;
+        if (!targets.users().isEmpty()) {
+            removed += timeSheetShareUserRepository.deleteShares(targets.sheetIds(), targets.users());
+        }
+        if (!targets.groups().isEmpty()) {
+            removed += timeSheetShareGroupRepository.deleteShares(targets.sheetIds(), targets.groups());
+        }
+        if (removed > 0) {
+            timeSheetRepository.incrementVersions(targets.sheetIds());
+        }
+        return TimeSheetDTO.ShareBatchResult.builder()
+                .timeSheets(targets.sheetIds().size())
+                .removed(removed)
+                .build();
+    }
+
+    private record ShareTargets(Set<Integer> sheetIds, List<TimeSheet> sheets, Set<Integer> users, Set<Integer> groups) {
+    }
+
+    private ShareTargets shareTargets(Collection<Integer> timeSheetIds, Collection<Integer> userIds,
+                                      Collection<Integer> groupIds) {
+        Set<Integer> sheetIds = timeSheetIds != null ? new HashSet<>(timeSheetIds) : Set.of();
+        Set<Integer> users = userIds != null ? new HashSet<>(userIds) : Set.of();
+        Set<Integer> groups = groupIds != null ? new HashSet<>(groupIds) : Set.of();
+        if (sheetIds.isEmpty()) {
+            throw new RuntimeException("Aucune feuille de temps");
+        }
+        if (users.isEmpty() && groups.isEmpty()) {
+            throw new RuntimeException("Aucun utilisateur ni groupe");
+        }
+        if (sheetIds.size() > MAX_SHARE_BATCH || users.size() + groups.size() > MAX_SHARE_BATCH) {
+            throw new RuntimeException("Un partage en masse est limité à " + MAX_SHARE_BATCH
+                    + " feuilles et " + MAX_SHARE_BATCH + " destinataires");
+        }
+
+        List<TimeSheet> sheets = timeSheetRepository.findAllById(sheetIds);
+        if (sheets.size() != sheetIds.size()) {
+            throw new RuntimeException("Feuille de temps introuvable");
+        }
+        if (!users.isEmpty() && userRepository.countByIdIn(users) != users.size()) {
+            throw new RuntimeException("Utilisateur introuvable");
+        }
+        if (!groups.isEmpty() && groupRepository.countByIdIn(groups) != groups.size()) {
+            throw new RuntimeException("Groupe introuvable");
+        }
+        return new ShareTargets(sheetIds, sheets, users, groups);
     }
 
     /**
@@ -270,47 +787,62 @@ public class TimeSheetService {
      * @return Données CSV
      */
     public byte[] exportTimeSheetsToCsv(Integer userId, LocalDate startDate, LocalDate endDate) {
-        List<TimeSheet> timeSheets = timeSheetRepository.findByUserId(userId);
-
-        if (startDate != null && endDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate) && !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
-        } else if (startDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate))
-                    .collect(Collectors.toList());
-        } else if (endDate != null) {
-            timeSheets = timeSheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
+        ByteArrayOutputStream csvContent = new ByteArrayOutputStream();
+        try {
+            writeTimeSheetsCsv(userId, startDate, endDate, csvContent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return csvContent.toByteArray();
+    }
 
-        StringBuilder csvContent = new StringBuilder();
+    /**
+     * Écrit l'export CSV dans un flux au fur et à mesure de la lecture du curseur :
+     * la mémoire utilisée ne dépend pas du nombre de lignes et l'en-tête part avant la requête.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param out Flux de sortie (non fermé)
+     * @throws IOException si l'écriture échoue (client déconnecté)
+     */
+    public void writeTimeSheetsCsv(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        writeTimeSheetsCsv(userId, startDate, endDate, out, null);
+    }
+
+    private void writeTimeSheetsCsv(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out,
+                                    LongConsumer progress) throws IOException {
+        // Écriture des chronomètres en attente avant d'ouvrir la transaction en lecture seule
+        timerEventBuffer.flushUser(userId);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
 
         // En-tête
-        csvContent.append("ID,Date,Icon,UserID,TaskID,TaskName,Duration,StartDate,EndDate\n");
+        writer.write("ID,Date,Icon,UserID,TaskID,TaskName,Duration,StartDate,EndDate\n");
+        writer.flush();
 
         // Données
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        for (TimeSheet timeSheet : timeSheets) {
-            List<TimeSheetTask> tasks = timeSheetTaskRepository.findByTimeSheetId(timeSheet.getId());
-
-            for (TimeSheetTask task : tasks) {
-                csvContent.append(timeSheet.getId()).append(",");
-                csvContent.append(timeSheet.getEntryDate().format(dateFormatter)).append(",");
-                csvContent.append(timeSheet.getIcon() != null ? timeSheet.getIcon() : "").append(",");
-                csvContent.append(timeSheet.getUser().getId()).append(",");
-                csvContent.append(task.getTaskId()).append(",");
-                csvContent.append(task.getTask() != null ? task.getTask().getName().replace(",", ";") : "Unknown").append(",");
-                csvContent.append(task.getDuration()).append(",");
-                csvContent.append(timeSheet.getStartDate() != null ? timeSheet.getStartDate().format(dateFormatter) : "").append(",");
-                csvContent.append(timeSheet.getEndDate() != null ? timeSheet.getEndDate().format(dateFormatter) : "").append("\n");
-            }
-        }
-
-        return csvContent.toString().getBytes(StandardCharsets.UTF_8);
+        readExportRows(userId, startDate, endDate, progress, row -> {
+            writer.write(String.valueOf(row.getTimeSheetId()));
+            writer.write(',');
+            writer.write(row.getEntryDate().format(dateFormatter));
+            writer.write(',');
+            writer.write(row.getIcon() != null ? row.getIcon() : "");
+            writer.write(',');
+            writer.write(String.valueOf(row.getUserId()));
+            writer.write(',');
+            writer.write(String.valueOf(row.getTaskId()));
+            writer.write(',');
+            writer.write(row.getTaskName() != null ? row.getTaskName().replace(",", ";") : "Unknown");
+            writer.write(',');
+            writer.write(String.valueOf(row.getDuration()));
+            writer.write(',');
+            writer.write(row.getStartDate() != null ? row.getStartDate().format(dateFormatter) : "");
+            writer.write(',');
+            writer.write(row.getEndDate() != null ? row.getEndDate().format(dateFormatter) : "");
+            writer.write('\n');
+        });
+        writer.flush();
     }
 
 
@@ -322,39 +854,45 @@ public class TimeSheetService {
      * @return PDF en tant que tableau d'octets
      */
     public byte[] exportTimeSheetsToPdf(Integer userId, LocalDate startDate, LocalDate endDate) {
-        List<TimeSheet> sheets = timeSheetRepository.findByUserId(userId);
-        if (startDate != null && endDate != null) {
-            sheets = sheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate) && !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
-        } else if (startDate != null) {
-            sheets = sheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isBefore(startDate))
-                    .collect(Collectors.toList());
-        } else if (endDate != null) {
-            sheets = sheets.stream()
-                    .filter(ts -> !ts.getEntryDate().isAfter(endDate))
-                    .collect(Collectors.toList());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            writeTimeSheetsPdf(userId, startDate, endDate, baos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Écrit l'export PDF dans un flux au fur et à mesure de la lecture du curseur.
+     * Le tableau est déclaré incomplet et ajouté au document toutes les PDF_CHUNK_ROWS lignes :
+     * iText écrit alors les pages pleines et libère leurs lignes, la mémoire ne dépend pas du nombre de lignes.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param out Flux de sortie (non fermé)
+     * @throws IOException si l'écriture échoue (client déconnecté)
+     */
+    public void writeTimeSheetsPdf(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        writeTimeSheetsPdf(userId, startDate, endDate, out, null);
+    }
+
+    private void writeTimeSheetsPdf(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out,
+                                    LongConsumer progress) throws IOException {
+        timerEventBuffer.flushUser(userId);
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
         Document document = new Document();
         try {
-            PdfWriter.getInstance(document, baos);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
             document.open();
 
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.WHITE);
-            Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.WHITE);
-            Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 10, BaseColor.BLACK);
-
-            BaseColor primaryColor = new BaseColor(26, 35, 126);
-
-            Paragraph title = new Paragraph("Export des feuilles de temps", titleFont);
+            Paragraph title = new Paragraph("Export des feuilles de temps", PDF_TITLE_FONT);
             title.setAlignment(Element.ALIGN_CENTER);
             PdfPTable titleTable = new PdfPTable(1);
             titleTable.setWidthPercentage(100);
             PdfPCell titleCell = new PdfPCell(title);
-            titleCell.setBackgroundColor(primaryColor);
+            titleCell.setBackgroundColor(PDF_PRIMARY_COLOR);
             titleCell.setHorizontalAlignment(Element.ALIGN_CENTER);
             titleCell.setBorder(PdfPCell.NO_BORDER);
             titleTable.addCell(titleCell);
@@ -365,56 +903,264 @@ public class TimeSheetService {
             table.setWidthPercentage(100);
             table.setSpacingBefore(10f);
             table.setSpacingAfter(10f);
+            table.setComplete(false);
+
+            // Gabarit des cellules de données : addCell(Phrase) copie la cellule par défaut
+            PdfPCell template = table.getDefaultCell();
+            template.setPadding(4f);
+            template.setHorizontalAlignment(Element.ALIGN_CENTER);
 
             // Add styled header cells for remaining columns: Date, TaskName, Duration, StartDate, EndDate
-            addStyledHeaderCell(table, "Date", headerFont, primaryColor);
-            addStyledHeaderCell(table, "TaskName", headerFont, primaryColor);
-            addStyledHeaderCell(table, "Duration", headerFont, primaryColor);
-            addStyledHeaderCell(table, "StartDate", headerFont, primaryColor);
-            addStyledHeaderCell(table, "EndDate", headerFont, primaryColor);
+            // (répétées en haut de chaque page)
+            addStyledHeaderCell(table, "Date");
+            addStyledHeaderCell(table, "TaskName");
+            addStyledHeaderCell(table, "Duration");
+            addStyledHeaderCell(table, "StartDate");
+            addStyledHeaderCell(table, "EndDate");
+            table.setHeaderRows(1);
 
             DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-            for (TimeSheet ts : sheets) {
-                List<TimeSheetTask> tasks = timeSheetTaskRepository.findByTimeSheetId(ts.getId());
-                for (TimeSheetTask task : tasks) {
-                    table.addCell(createCell(ts.getEntryDate().format(dateFormatter), cellFont));
-                    String taskName = task.getTask() != null ? task.getTask().getName() : "Unknown";
-                    table.addCell(createCell(taskName.replace(",", ";"), cellFont));
-                    table.addCell(createCell(task.getDuration() != null ? task.getDuration().toString() : "", cellFont));
-                    table.addCell(createCell(ts.getStartDate() != null ? ts.getStartDate().format(dateFormatter) : "", cellFont));
-                    table.addCell(createCell(ts.getEndDate() != null ? ts.getEndDate().format(dateFormatter) : "", cellFont));
+            int[] rows = {0};
+
+            readExportRows(userId, startDate, endDate, progress, row -> {
+                table.addCell(new Phrase(row.getEntryDate().format(dateFormatter), PDF_CELL_FONT));
+                String taskName = row.getTaskName() != null ? row.getTaskName() : "Unknown";
+                table.addCell(new Phrase(taskName.replace(",", ";"), PDF_CELL_FONT));
+                table.addCell(new Phrase(row.getDuration() != null ? row.getDuration().toString() : "", PDF_CELL_FONT));
+                table.addCell(new Phrase(row.getStartDate() != null ? row.getStartDate().format(dateFormatter) : "", PDF_CELL_FONT));
+                table.addCell(new Phrase(row.getEndDate() != null ? row.getEndDate().format(dateFormatter) : "", PDF_CELL_FONT));
+                if (++rows[0] % PDF_CHUNK_ROWS == 0) {
+                    try {
+                        document.add(table);
+                    } catch (DocumentException de) {
+                        throw new RuntimeException("Erreur lors de la génération du PDF: " + de.getMessage());
+                    }
                 }
-            }
+            });
 
+            table.setComplete(true);
             document.add(table);
             document.close();
         } catch (DocumentException de) {
             throw new RuntimeException("Erreur lors de la génération du PDF: " + de.getMessage());
         }
-        return baos.toByteArray();
     }
 
+    /**
+     * Écrit l'export XLSX dans un flux. Le classeur est écrit en flux (SXSSF) : seules les XLSX_WINDOW_ROWS
+     * dernières lignes restent en mémoire, les autres sont écrites dans un fichier temporaire compressé.
+     * Au-delà de la limite d'Excel, les lignes continuent sur une nouvelle feuille.
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param out Flux de sortie (non fermé)
+     * @throws IOException si l'écriture échoue (client déconnecté)
+     */
+    public void writeTimeSheetsXlsx(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        writeTimeSheetsXlsx(userId, startDate, endDate, out, null);
+    }
+
+    private void writeTimeSheetsXlsx(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out,
+                                     LongConsumer progress) throws IOException {
+        timerEventBuffer.flushUser(userId);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_WINDOW_ROWS);
+        workbook.setCompressTempFiles(true);
+        try {
+            // Styles créés une seule fois et partagés par toutes les cellules
+            CellStyle headerStyle = workbook.createCellStyle();
+            org.apache.poi.ss.usermodel.Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            SXSSFSheet[] sheet = {createXlsxSheet(workbook, headerStyle)};
+            int[] rowIndex = {1};
+
+            readExportRows(userId, startDate, endDate, progress, row -> {
+                if (rowIndex[0] >= XLSX_MAX_ROWS) {
+                    sheet[0] = createXlsxSheet(workbook, headerStyle);
+                    rowIndex[0] = 1;
+                }
+                Row line = sheet[0].createRow(rowIndex[0]++);
+                line.createCell(0).setCellValue(row.getTimeSheetId());
+                setXlsxDate(line, 1, row.getEntryDate(), dateStyle);
+                line.createCell(2).setCellValue(row.getIcon() != null ? row.getIcon() : "");
+                line.createCell(3).setCellValue(row.getUserId());
+                line.createCell(4).setCellValue(row.getTaskId());
+                line.createCell(5).setCellValue(row.getTaskName() != null ? row.getTaskName() : "Unknown");
+                line.createCell(6).setCellValue(row.getDuration());
+                setXlsxDate(line, 7, row.getStartDate(), dateStyle);
+                setXlsxDate(line, 8, row.getEndDate(), dateStyle);
+            });
+
+            workbook.write(CloseShieldOutputStream.wrap(out));
+            out.flush();
+        } finally {
+            // Suppression des fichiers temporaires de SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private SXSSFSheet createXlsxSheet(SXSSFWorkbook workbook, CellStyle headerStyle) {
+        int number = workbook.getNumberOfSheets() + 1;
+        SXSSFSheet sheet = workbook.createSheet(number == 1 ? "Feuilles de temps" : "Feuilles de temps " + number);
+        Row header = sheet.createRow(0);
+        for (int column = 0; column < EXPORT_COLUMNS.length; column++) {
+            header.createCell(column).setCellValue(EXPORT_COLUMNS[column]);
+            header.getCell(column).setCellStyle(headerStyle);
+        }
+        return sheet;
+    }
 
+    private void setXlsxDate(Row line, int column, LocalDate date, CellStyle dateStyle) {
+        if (date != null) {
+            line.createCell(column).setCellValue(date);
+            line.getCell(column).setCellStyle(dateStyle);
+        }
+    }
 
     /**
-     * Adds a styled header cell to a table.
+     * Écrit l'export en JSON délimité par des retours à la ligne (un objet par ligne), compressé en gzip
+     * au fil de l'écriture : adapté aux volumes de plusieurs millions de lignes
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param out Flux de sortie (non fermé)
+     * @throws IOException si l'écriture échoue (client déconnecté)
      */
-    private void addStyledHeaderCell(PdfPTable table, String text, Font font, BaseColor backgroundColor) {
-        PdfPCell cell = new PdfPCell(new Paragraph(text, font));
-        cell.setBackgroundColor(backgroundColor);
-        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        table.addCell(cell);
+    public void writeTimeSheetsNdjsonGz(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        writeTimeSheetsNdjsonGz(userId, startDate, endDate, out, null);
+    }
+
+    private void writeTimeSheetsNdjsonGz(Integer userId, LocalDate startDate, LocalDate endDate, OutputStream out,
+                                         LongConsumer progress) throws IOException {
+        timerEventBuffer.flushUser(userId);
+
+        GZIPOutputStream gzip = new GZIPOutputStream(CloseShieldOutputStream.wrap(out), CSV_BUFFER_SIZE);
+        // La fermeture du générateur termine le flux gzip sans fermer la réponse
+        try (JsonGenerator json = NDJSON_FACTORY.createGenerator(
+                new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), CSV_BUFFER_SIZE))) {
+            json.setRootValueSeparator(null);
+            readExportRows(userId, startDate, endDate, progress, row -> {
+                json.writeStartObject();
+                json.writeNumberField("timeSheetId", row.getTimeSheetId());
+                json.writeStringField("entryDate", row.getEntryDate().toString());
+                json.writeStringField("icon", row.getIcon());
+                json.writeNumberField("userId", row.getUserId());
+                json.writeNumberField("taskId", row.getTaskId());
+                json.writeStringField("taskName", row.getTaskName());
+                json.writeNumberField("duration", row.getDuration());
+                json.writeStringField("startDate", row.getStartDate() != null ? row.getStartDate().toString() : null);
+                json.writeStringField("endDate", row.getEndDate() != null ? row.getEndDate().toString() : null);
+                json.writeEndObject();
+                json.writeRaw('\n');
+            });
+        }
+        out.flush();
+    }
+
+    /**
+     * Écrit un export dans le format demandé (tâches d'export asynchrones)
+     * @param format Format de l'export
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param out Flux de sortie (non fermé)
+     * @param progress Reçoit régulièrement le nombre de lignes écrites (optionnel)
+     * @throws IOException si l'écriture échoue
+     */
+    public void writeExport(ExportFormat format, Integer userId, LocalDate startDate, LocalDate endDate,
+                            OutputStream out, LongConsumer progress) throws IOException {
+        switch (format) {
+            case CSV -> writeTimeSheetsCsv(userId, startDate, endDate, out, progress);
+            case PDF -> writeTimeSheetsPdf(userId, startDate, endDate, out, progress);
+            case XLSX -> writeTimeSheetsXlsx(userId, startDate, endDate, out, progress);
+            case NDJSON_GZ -> writeTimeSheetsNdjsonGz(userId, startDate, endDate, out, progress);
+        }
+    }
+
+    /**
+     * Version des données d'un export : elle change dès qu'une feuille de la période est créée, modifiée
+     * (tâches, durées, noms de tâches) ou supprimée
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @return Version des données
+     */
+    public String getExportVersion(Integer userId, LocalDate startDate, LocalDate endDate) {
+        timerEventBuffer.flushUser(userId);
+        TimeSheetRepository.ListVersion version = timeSheetRepository.findListVersionByUserId(userId,
+                startDate != null ? startDate : MIN_DATE, endDate != null ? endDate : MAX_DATE);
+        return version.getSheets() + "-" + version.getVersionSum() + "-" + version.getMaxId();
+    }
+
+    /**
+     * Nombre de lignes d'un export (une par tâche de feuille), pour le suivi de progression
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @return Nombre de lignes
+     */
+    public long countExportRows(Integer userId, LocalDate startDate, LocalDate endDate) {
+        return timeSheetRepository.countExportRows(userId,
+                startDate != null ? startDate : MIN_DATE, endDate != null ? endDate : MAX_DATE);
+    }
+
+    /**
+     * Lit les lignes d'export dans une transaction en lecture seule (le curseur doit rester ouvert pendant la lecture)
+     * @param userId ID de l'utilisateur
+     * @param startDate Date de début (optionnelle)
+     * @param endDate Date de fin (optionnelle)
+     * @param progress Reçoit le nombre de lignes lues toutes les EXPORT_PROGRESS_ROWS lignes et à la fin (optionnel)
+     * @param consumer Traitement de chaque ligne
+     * @throws IOException si le traitement d'une ligne échoue en écriture
+     */
+    private void readExportRows(Integer userId, LocalDate startDate, LocalDate endDate,
+                                LongConsumer progress, ExportRowConsumer consumer) throws IOException {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        try {
+            template.executeWithoutResult(status -> {
+                // Curseur : un seul aller-retour au départ puis des blocs de lignes lus à la demande
+                try (Stream<TimeSheetRepository.ExportRow> rows = timeSheetRepository.streamExportRows(userId,
+                        startDate != null ? startDate : MIN_DATE, endDate != null ? endDate : MAX_DATE)) {
+                    long[] count = {0};
+                    rows.forEach(row -> {
+                        try {
+                            consumer.accept(row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        if (progress != null && ++count[0] % EXPORT_PROGRESS_ROWS == 0) {
+                            progress.accept(count[0]);
+                        }
+                    });
+                    if (progress != null) {
+                        progress.accept(count[0]);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportRowConsumer {
+        void accept(TimeSheetRepository.ExportRow row) throws IOException;
     }
 
     /**
-     * Creates a table cell with given text and font.
+     * Adds a styled header cell to a table.
      */
-    private PdfPCell createCell(String text, Font font) {
-        PdfPCell cell = new PdfPCell(new Paragraph(text, font));
-        cell.setPadding(4f);
+    private void addStyledHeaderCell(PdfPTable table, String text) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, PDF_HEADER_FONT));
+        cell.setBackgroundColor(PDF_PRIMARY_COLOR);
         cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        return cell;
+        table.addCell(cell);
     }
 
 
@@ -425,14 +1171,73 @@ public class TimeSheetService {
      * @param durationInSeconds Nouvelle durée en minutes
      * @return Tâche mise à jour
      */
+    @Transactional
     public TimeSheetTask updateTaskDuration(Integer timeSheetId, Integer taskId, Integer durationInSeconds) {
+        return updateTaskDuration(timeSheetId, taskId, durationInSeconds, null);
+    }
+
+    /**
+     * Met à jour la durée d'une tâche si la feuille est toujours dans la version attendue (If-Match).
+     * La version est comparée sous le verrou de la feuille : deux clients qui présentent le même ETag
+     * ne peuvent pas écrire tous les deux.
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     * @param durationInSeconds Nouvelle durée en minutes
+     * @param expectedVersion Version attendue de la feuille, null pour ne pas vérifier
+     * @return Tâche mise à jour
+     * @throws ObjectOptimisticLockingFailureException si la feuille a été modifiée entre-temps
+     */
+    @Transactional
+    public TimeSheetTask updateTaskDuration(Integer timeSheetId, Integer taskId, Integer durationInSeconds,
+                                            Long expectedVersion) {
+        // L'écriture directe remplace une durée du chronomètre encore en attente
+        timerEventBuffer.discard(timeSheetId, taskId);
         TimeSheetTaskId id = new TimeSheetTaskId(taskId, timeSheetId);
 
         TimeSheetTask timeSheetTask = timeSheetTaskRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Association tâche-feuille introuvable"));
 
+        Integer previousDuration = timeSheetTask.getDuration();
         timeSheetTask.setDuration(durationInSeconds);
-        return timeSheetTaskRepository.save(timeSheetTask);
+        TimeSheetTask saved = timeSheetTaskRepository.save(timeSheetTask);
+
+        TimeSheet timeSheet = saved.getTimeSheet();
+        statisticsRollupService.entryChanged(timeSheet.getUser().getId(), timeSheet.getEntryDate(), taskId,
+                previousDuration, saved.getCompleted(), saved);
+        touch(timeSheet, expectedVersion);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, timeSheet.getEntryDate());
+        return saved;
+    }
+
+    /**
+     * Ajoute une durée (positive ou négative) à une tâche d'une feuille de temps en une seule instruction
+     * UPDATE (duration = duration + delta) : deux appareils ou deux membres d'un groupe qui ajoutent du temps
+     * en même temps ne perdent aucune écriture, contrairement à la lecture puis écriture de updateTaskDuration.
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     * @param delta Durée à ajouter en minutes
+     * @return Tâche mise à jour
+     */
+    @Transactional
+    public TimeSheetTask incrementTaskDuration(Integer timeSheetId, Integer taskId, int delta) {
+        // La durée du chronomètre encore en attente est écrite avant l'ajout, dans sa propre transaction :
+        // elle reste écrite si l'ajout est refusé
+        timerEventBuffer.flushTimeSheet(timeSheetId);
+        TimeSheetTask timeSheetTask = timeSheetTaskRepository.findById(new TimeSheetTaskId(taskId, timeSheetId))
+                .orElseThrow(() -> new RuntimeException("Association tâche-feuille introuvable"));
+
+        if (timeSheetTaskRepository.incrementDuration(timeSheetId, taskId, delta) == 0) {
+            throw new RuntimeException("La durée ne peut pas devenir négative");
+        }
+        // Valeur écrite par l'UPDATE (la ligne reste verrouillée jusqu'à la fin de la transaction)
+        entityManager.refresh(timeSheetTask);
+
+        TimeSheet timeSheet = timeSheetTask.getTimeSheet();
+        statisticsRollupService.entryChanged(timeSheet.getUser().getId(), timeSheet.getEntryDate(), taskId,
+                timeSheetTask.getDuration() - delta, timeSheetTask.getCompleted(), timeSheetTask);
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, timeSheet.getEntryDate());
+        return timeSheetTask;
     }
 
     /**
@@ -442,16 +1247,40 @@ public class TimeSheetService {
      * @param completed Nouvel état "complété"
      * @return Tâche mise à jour
      */
+    @Transactional
     public TimeSheetTask updateTaskCompletionState(Integer timeSheetId, Integer taskId, Boolean completed) {
+        return updateTaskCompletionState(timeSheetId, taskId, completed, null);
+    }
+
+    /**
+     * Met à jour l'état "complété" d'une tâche si la feuille est toujours dans la version attendue (If-Match)
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     * @param completed Nouvel état "complété"
+     * @param expectedVersion Version attendue de la feuille, null pour ne pas vérifier
+     * @return Tâche mise à jour
+     * @throws ObjectOptimisticLockingFailureException si la feuille a été modifiée entre-temps
+     */
+    @Transactional
+    public TimeSheetTask updateTaskCompletionState(Integer timeSheetId, Integer taskId, Boolean completed,
+                                                   Long expectedVersion) {
         TimeSheetTaskId id = new TimeSheetTaskId(taskId, timeSheetId);
 
         TimeSheetTask timeSheetTask = timeSheetTaskRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Association tâche-feuille introuvable"));
 
         // Mettre à jour l'état "complété"
+        Boolean previousCompleted = timeSheetTask.getCompleted();
         timeSheetTask.setCompleted(completed);
 
-        return timeSheetTaskRepository.save(timeSheetTask);
+        TimeSheetTask saved = timeSheetTaskRepository.save(timeSheetTask);
+
+        TimeSheet timeSheet = saved.getTimeSheet();
+        statisticsRollupService.entryChanged(timeSheet.getUser().getId(), timeSheet.getEntryDate(), taskId,
+                saved.getDuration(), previousCompleted, saved);
+        touch(timeSheet, expectedVersion);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, timeSheet.getEntryDate());
+        return saved;
     }
 
     /**
@@ -459,16 +1288,226 @@ public class TimeSheetService {
      * @param timeSheetId ID de la feuille de temps
      * @param taskId ID de la tâche
      */
+    @Transactional
     public void removeTaskFromTimeSheet(Integer timeSheetId, Integer taskId) {
+        timerEventBuffer.discard(timeSheetId, taskId);
         // Créer l'ID composite
         TimeSheetTaskId id = new TimeSheetTaskId(taskId, timeSheetId);
 
         // Vérifier si la relation existe
-        if (timeSheetTaskRepository.existsById(id)) {
-            // Supprimer la relation
-            timeSheetTaskRepository.deleteById(id);
-        } else {
-            throw new RuntimeException("Association tâche-feuille de temps introuvable");
+        TimeSheetTask timeSheetTask = timeSheetTaskRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Association tâche-feuille de temps introuvable"));
+
+        // Supprimer la relation
+        TimeSheet timeSheet = timeSheetTask.getTimeSheet();
+        timeSheetTaskRepository.delete(timeSheetTask);
+        statisticsRollupService.entryRemoved(timeSheet.getUser().getId(), timeSheet.getEntryDate(), timeSheetTask);
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, timeSheet.getEntryDate());
+    }
+
+    /**
+     * Applique un lot d'opérations sur les tâches d'une feuille de temps, dans une seule transaction :
+     * si une opération échoue, aucune n'est appliquée.
+     * La feuille et ses tâches sont lues une fois ; les écritures sur TIME_SHEET_TASK partent en lots JDBC
+     * au moment du flush. Les agrégats statistiques sont mis à jour une fois par tâche modifiée,
+     * d'après l'état initial et l'état final.
+     * @param timeSheetId ID de la feuille de temps
+     * @param operations Opérations, appliquées dans l'ordre
+     * @return Compteurs et tâches de la feuille après le lot
+     */
+    @Transactional
+    public TimeSheetDTO.TaskBatchResult applyTaskBatch(Integer timeSheetId, List<TimeSheetDTO.TaskOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new RuntimeException("Le lot ne contient aucune opération");
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new RuntimeException("Le lot dépasse " + MAX_BATCH_OPERATIONS + " opérations");
+        }
+
+        TimeSheet timeSheet = timeSheetRepository.findById(timeSheetId)
+                .orElseThrow(() -> new RuntimeException("TimeSheet introuvable"));
+
+        Map<Integer, TimeSheetTask> existing = new HashMap<>();
+        Map<Integer, TimeSheetTask> current = new LinkedHashMap<>();
+        for (TimeSheetTask entry : timeSheetTaskRepository.findByTimeSheetId(timeSheetId)) {
+            existing.put(entry.getTaskId(), entry);
+            current.put(entry.getTaskId(), entry);
+        }
+        // État initial des tâches touchées par le lot (null si absente), pour les agrégats
+        Map<Integer, TimeSheetTask> initial = new HashMap<>();
+
+        Set<Integer> addedTaskIds = new HashSet<>();
+        for (TimeSheetDTO.TaskOperation operation : operations) {
+            if (operation.getTaskId() != null) {
+                // Avant toute écriture : les durées du chronomètre en attente sont remplacées par le lot
+                timerEventBuffer.discard(timeSheetId, operation.getTaskId());
+            }
+            if ("add".equals(operation.getOp()) && operation.getTaskId() != null) {
+                addedTaskIds.add(operation.getTaskId());
+            }
+        }
+        Map<Integer, Task> tasks = new HashMap<>();
+        for (Task task : taskRepository.findAllById(addedTaskIds)) {
+            tasks.put(task.getId(), task);
+        }
+
+        int added = 0;
+        int updated = 0;
+        int removed = 0;
+        for (TimeSheetDTO.TaskOperation operation : operations) {
+            Integer taskId = operation.getTaskId();
+            if (taskId == null) {
+                throw new RuntimeException("taskId est requis pour chaque opération");
+            }
+            TimeSheetTask entry = current.get(taskId);
+            if (!initial.containsKey(taskId)) {
+                initial.put(taskId, entry == null ? null : TimeSheetTask.builder()
+                        .taskId(taskId)
+                        .timeSheetId(timeSheetId)
+                        .duration(entry.getDuration())
+                        .completed(entry.getCompleted())
+                        .build());
+            }
+
+            switch (operation.getOp() == null ? "" : operation.getOp()) {
+                case "add" -> {
+                    if (entry != null) {
+                        throw new RuntimeException("La tâche " + taskId + " est déjà dans la feuille de temps");
+                    }
+                    Task task = tasks.get(taskId);
+                    if (task == null) {
+                        throw new RuntimeException("Task not found");
+                    }
+                    // Une tâche retirée puis rajoutée dans le même lot reprend la ligne existante
+                    TimeSheetTask timeSheetTask = existing.getOrDefault(taskId, new TimeSheetTask());
+                    timeSheetTask.setTimeSheetId(timeSheetId);
+                    timeSheetTask.setTaskId(taskId);
+                    timeSheetTask.setDuration(operation.getDuration() != null ? operation.getDuration() : 0);
+                    timeSheetTask.setCompleted(false);
+                    timeSheetTask.setTimeSheet(timeSheet);
+                    timeSheetTask.setTask(task);
+                    current.put(taskId, timeSheetTask);
+                    added++;
+                }
+                case "update" -> {
+                    if (operation.getDuration() == null) {
+                        throw new RuntimeException("La durée est requise");
+                    }
+                    requireEntry(entry, taskId).setDuration(operation.getDuration());
+                    updated++;
+                }
+                case "complete" -> {
+                    if (operation.getCompleted() == null) {
+                        throw new RuntimeException("L'état de complétion est requis");
+                    }
+                    requireEntry(entry, taskId).setCompleted(operation.getCompleted());
+                    updated++;
+                }
+                case "remove" -> {
+                    requireEntry(entry, taskId);
+                    current.remove(taskId);
+                    removed++;
+                }
+                default -> throw new RuntimeException("Opération inconnue : " + operation.getOp()
+                        + " (attendu : add, update, complete, remove)");
+            }
+        }
+
+        // Écritures : insertions et suppressions groupées, mises à jour par dirty checking
+        List<TimeSheetTask> inserts = new ArrayList<>();
+        List<TimeSheetTask> deletes = new ArrayList<>();
+        Integer userId = timeSheet.getUser().getId();
+        LocalDate entryDate = timeSheet.getEntryDate();
+        for (Map.Entry<Integer, TimeSheetTask> touched : initial.entrySet()) {
+            TimeSheetTask before = touched.getValue();
+            TimeSheetTask after = current.get(touched.getKey());
+            if (before == null && after != null) {
+                inserts.add(after);
+                statisticsRollupService.entryAdded(userId, entryDate, after);
+            } else if (before != null && after == null) {
+                deletes.add(existing.get(touched.getKey()));
+                statisticsRollupService.entryRemoved(userId, entryDate, before);
+            } else if (before != null) {
+                statisticsRollupService.entryChanged(userId, entryDate, touched.getKey(),
+                        before.getDuration(), before.getCompleted(), after);
+            }
+        }
+        timeSheetTaskRepository.deleteAll(deletes);
+        // persist plutôt que save : l'ID composite est renseigné, save ferait un merge (SELECT par ligne)
+        inserts.forEach(entityManager::persist);
+
+        touch(timeSheet);
+        publishChange(TimeSheetChangedEvent.Type.TASKS_CHANGED, timeSheet, entryDate);
+
+        List<TimeSheetDTO.TaskLine> lines = new ArrayList<>();
+        for (TimeSheetTask entry : current.values()) {
+            lines.add(TimeSheetDTO.TaskLine.builder()
+                    .timeSheetId(timeSheetId)
+                    .taskId(entry.getTaskId())
+                    .taskName(entry.getTask() != null ? entry.getTask().getName() : null)
+                    .duration(entry.getDuration())
+                    .completed(entry.getCompleted())
+                    .build());
+        }
+        return TimeSheetDTO.TaskBatchResult.builder()
+                .timeSheetId(timeSheetId)
+                .added(added)
+                .updated(updated)
+                .removed(removed)
+                .tasks(lines)
+                .build();
+    }
+
+    private static TimeSheetTask requireEntry(TimeSheetTask entry, Integer taskId) {
+        if (entry == null) {
+            throw new RuntimeException("La tâche " + taskId + " n'est pas dans la feuille de temps");
+        }
+        return entry;
+    }
+
+    /**
+     * Incrémente la version d'une feuille dont les tâches ou les partages ont changé : ils font partie
+     * de sa représentation, donc de son ETag. Le verrou sérialise les écritures concurrentes sur la feuille
+     * au lieu de faire échouer l'une d'elles : la feuille est relue verrouillée (sa version a pu changer depuis
+     * son chargement). Les lignes des tâches sont écrites avant, toujours dans l'ordre tâches puis feuille.
+     * Appelé explicitement après chaque modification des tâches ou des partages d'une feuille.
+     * @param timeSheet Feuille de temps chargée dans la transaction courante
+     */
+    private void touch(TimeSheet timeSheet) {
+        touch(timeSheet, null);
+    }
+
+    /**
+     * Incrémente la version d'une feuille après avoir vérifié, sous son verrou, qu'elle est dans la version attendue
+     * @param timeSheet Feuille de temps chargée dans la transaction courante
+     * @param expectedVersion Version attendue (If-Match), null pour ne pas vérifier
+     * @throws ObjectOptimisticLockingFailureException si la feuille a été modifiée entre-temps (la transaction est annulée)
+     */
+    private void touch(TimeSheet timeSheet, Long expectedVersion) {
+        entityManager.flush();
+        entityManager.refresh(timeSheet, LockModeType.PESSIMISTIC_WRITE);
+        if (expectedVersion != null && !expectedVersion.equals(timeSheet.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(TimeSheet.class, timeSheet.getId());
+        }
+        entityManager.lock(timeSheet, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+    }
+
+    /**
+     * Publie une modification de feuille de temps (cache des statistiques, etc.)
+     * @param type Type de modification
+     * @param timeSheet Feuille de temps modifiée
+     * @param entryDates Dates concernées
+     */
+    private void publishChange(TimeSheetChangedEvent.Type type, TimeSheet timeSheet, LocalDate... entryDates) {
+        // Ancienne et nouvelle date identiques lors d'une modification sans déplacement : une seule date
+        Set<LocalDate> dates = new LinkedHashSet<>();
+        for (LocalDate entryDate : entryDates) {
+            if (entryDate != null) {
+                dates.add(entryDate);
+            }
         }
+        eventPublisher.publishEvent(new TimeSheetChangedEvent(type, timeSheet.getId(), timeSheet.getUser().getId(),
+                Collections.unmodifiableSet(dates)));
     }
 }
\ No newline at end of file
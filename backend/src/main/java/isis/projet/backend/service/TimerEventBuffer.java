@@ -0,0 +1,389 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.TimeSheetTask;
+import isis.projet.backend.entity.TimeSheetTaskId;
+import isis.projet.backend.repository.TimeSheetTaskRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Tampon d'écriture différée des durées envoyées par le chronomètre.
+ * Les événements (tick, heartbeat) portent la durée courante d'une tâche de feuille de temps :
+ * seuls le dernier par (feuille, tâche) est conservé, puis écrit dans TIME_SHEET_TASK par lots
+ * (à intervalle régulier, dès que le tampon dépasse max-pending, à l'arrêt de l'application,
+ * et avant les lectures des feuilles de l'utilisateur concerné).
+ * Les feuilles sont réparties sur des verrous indépendants : un vidage ne bloque que les feuilles
+ * de sa tranche. Les durées restées en attente à l'arrêt sont enregistrées dans spool-dir
+ * et reprises au démarrage suivant.
+ */
+@Component
+public class TimerEventBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerEventBuffer.class);
+
+    private static final int STRIPES = 16;
+    /**
+     * Nombre d'écritures en échec après lequel une durée est abandonnée
+     */
+    static final int MAX_ATTEMPTS = 5;
+    private static final String SPOOL_FILE = "timer-pending.csv";
+
+    /**
+     * Durée en attente d'écriture
+     * @param ownerId ID du propriétaire de la feuille (vidage avant ses lectures)
+     * @param at Horodatage de l'événement : le plus récent l'emporte
+     * @param attempts Nombre d'écritures déjà en échec
+     */
+    record Pending(Integer timeSheetId, Integer taskId, Integer ownerId, int duration, long at, int attempts) {
+
+        TimeSheetTaskId key() {
+            return new TimeSheetTaskId(taskId, timeSheetId);
+        }
+
+        Pending failed() {
+            return new Pending(timeSheetId, taskId, ownerId, duration, at, attempts + 1);
+        }
+    }
+
+    private final Map<TimeSheetTaskId, Pending> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripeLocks = new ReentrantLock[STRIPES];
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("timer-flush").daemon().factory());
+
+    private final TimeSheetTaskRepository timeSheetTaskRepository;
+    private final StatisticsRollupService statisticsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final int maxPending;
+    private final Path spoolFile;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TimerEventBuffer(TimeSheetTaskRepository timeSheetTaskRepository,
+                            StatisticsRollupService statisticsRollupService,
+                            ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.timer.max-pending:5000}") int maxPending,
+                            @Value("${app.timer.spool-dir:}") String spoolDir) throws IOException {
+        this.timeSheetTaskRepository = timeSheetTaskRepository;
+        this.statisticsRollupService = statisticsRollupService;
+        this.eventPublisher = eventPublisher;
+        // Transaction propre au vidage, même appelé depuis une transaction en cours : les durées retirées
+        // du tampon sont validées indépendamment de l'appelant (un échec de celui-ci ne les annule pas)
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxPending = maxPending;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripeLocks[stripe] = new ReentrantLock();
+        }
+
+        Path directory = spoolDir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "timetracking-timer")
+                : Path.of(spoolDir);
+        Files.createDirectories(directory);
+        this.spoolFile = directory.resolve(SPOOL_FILE);
+        restore();
+    }
+
+    /**
+     * Ajoute une durée au tampon, en remplaçant la valeur en attente si elle est plus ancienne
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     * @param ownerId ID du propriétaire de la feuille
+     * @param duration Durée courante
+     * @param at Horodatage de l'événement (millisecondes)
+     */
+    public void submit(Integer timeSheetId, Integer taskId, Integer ownerId, int duration, long at) {
+        Pending value = new Pending(timeSheetId, taskId, ownerId, duration, at, 0);
+        pending.merge(value.key(), value, (previous, next) -> next.at() >= previous.at() ? next : previous);
+
+        if (pending.size() >= 2 * maxPending) {
+            // Le vidage ne suit pas : l'appelant écrit lui-même (contre-pression)
+            flush();
+        } else if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Abandonne la durée en attente d'une tâche, remplacée par une écriture directe.
+     * À appeler avant toute écriture de la transaction : le verrou de la tranche attend la fin d'un vidage
+     * en cours, qui ne peut donc plus écraser l'écriture directe. Si la transaction est annulée,
+     * la durée est remise en attente.
+     * @param timeSheetId ID de la feuille de temps
+     * @param taskId ID de la tâche
+     */
+    public void discard(Integer timeSheetId, Integer taskId) {
+        ReentrantLock lock = lockOf(timeSheetId);
+        Pending removed;
+        lock.lock();
+        try {
+            removed = pending.remove(new TimeSheetTaskId(taskId, timeSheetId));
+        } finally {
+            lock.unlock();
+        }
+
+        if (removed != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        requeue(removed);
+                    }
+                }
+            });
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Écrit les durées en attente des feuilles d'un utilisateur, pour que ses lectures les voient
+     * @param userId ID du propriétaire des feuilles
+     */
+    public void flushUser(Integer userId) {
+        if (!pending.isEmpty()) {
+            flush(value -> value.ownerId().equals(userId));
+        }
+    }
+
+    /**
+     * Écrit les durées en attente d'une feuille de temps
+     * @param timeSheetId ID de la feuille de temps
+     */
+    public void flushTimeSheet(Integer timeSheetId) {
+        if (!pending.isEmpty()) {
+            flush(value -> value.timeSheetId().equals(timeSheetId));
+        }
+    }
+
+    /**
+     * Vidage périodique : le retard d'écriture est borné par l'intervalle
+     */
+    @Scheduled(fixedDelayString = "${app.timer.flush-interval:PT2S}")
+    public void flush() {
+        flush(value -> true);
+    }
+
+    /**
+     * Vidage à l'arrêt : les durées qui n'ont pas pu être écrites sont enregistrées sur disque
+     * et reprises au démarrage suivant
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            spool();
+        }
+    }
+
+    private void flush(Predicate<Pending> filter) {
+        // Clés concernées par tranche ; chaque tranche est écrite sous son propre verrou
+        Map<Integer, List<TimeSheetTaskId>> keysByStripe = new TreeMap<>();
+        for (Pending value : pending.values()) {
+            if (filter.test(value)) {
+                keysByStripe.computeIfAbsent(stripeOf(value.timeSheetId()), stripe -> new ArrayList<>()).add(value.key());
+            }
+        }
+        keysByStripe.forEach((stripe, keys) -> flushStripe(stripe, keys, filter));
+    }
+
+    private void flushStripe(int stripe, List<TimeSheetTaskId> keys, Predicate<Pending> filter) {
+        ReentrantLock lock = stripeLocks[stripe];
+        lock.lock();
+        try {
+            List<Pending> batch = new ArrayList<>();
+            for (TimeSheetTaskId key : keys) {
+                // Retrait conditionnel : une valeur plus récente arrivée entre-temps reste en attente
+                Pending value = pending.get(key);
+                if (value != null && filter.test(value) && pending.remove(key, value)) {
+                    batch.add(value);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                transaction.executeWithoutResult(status -> write(batch));
+            } catch (RuntimeException e) {
+                // Une ligne en échec ne doit pas bloquer les autres : chaque durée est réessayée seule
+                logger.warn("Échec de l'écriture de {} durées du chronomètre, nouvel essai durée par durée", batch.size(), e);
+                batch.forEach(this::writeAlone);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Écrit une durée dans sa propre transaction ; en cas d'échec, elle est remise en attente
+     * jusqu'à MAX_ATTEMPTS tentatives, puis abandonnée
+     */
+    private void writeAlone(Pending value) {
+        try {
+            transaction.executeWithoutResult(status -> write(List.of(value)));
+        } catch (RuntimeException e) {
+            Pending failed = value.failed();
+            if (failed.attempts() >= MAX_ATTEMPTS) {
+                logger.error("Durée du chronomètre abandonnée après {} tentatives (feuille {}, tâche {}, durée {})",
+                        failed.attempts(), value.timeSheetId(), value.taskId(), value.duration(), e);
+                return;
+            }
+            logger.warn("Échec de l'écriture de la durée du chronomètre (feuille {}, tâche {}), tentative {}/{}",
+                    value.timeSheetId(), value.taskId(), failed.attempts(), MAX_ATTEMPTS, e);
+            merge(failed);
+        }
+    }
+
+    private void requeue(Pending value) {
+        ReentrantLock lock = lockOf(value.timeSheetId());
+        lock.lock();
+        try {
+            merge(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remet une durée en attente, sans écraser une valeur plus récente
+     */
+    private void merge(Pending value) {
+        pending.merge(value.key(), value, (current, restored) -> current.at() >= restored.at() ? current : restored);
+    }
+
+    private ReentrantLock lockOf(Integer timeSheetId) {
+        return stripeLocks[stripeOf(timeSheetId)];
+    }
+
+    private static int stripeOf(Integer timeSheetId) {
+        return Math.floorMod(timeSheetId.hashCode(), STRIPES);
+    }
+
+    private void write(List<Pending> batch) {
+        Set<Integer> timeSheetIds = new HashSet<>();
+        for (Pending value : batch) {
+            timeSheetIds.add(value.timeSheetId());
+        }
+
+        Map<TimeSheetTaskId, TimeSheetTask> rows = new HashMap<>();
+        for (TimeSheetTask row : timeSheetTaskRepository.findByTimeSheetIdIn(timeSheetIds)) {
+            rows.put(new TimeSheetTaskId(row.getTaskId(), row.getTimeSheetId()), row);
+        }
+
+        // Les mises à jour partent en lots JDBC au commit (dirty checking)
+        Map<Integer, TimeSheet> changed = new HashMap<>();
+        for (Pending value : batch) {
+            TimeSheetTask row = rows.get(value.key());
+            if (row == null || Objects.equals(row.getDuration(), value.duration())) {
+                // Tâche retirée de la feuille entre-temps, ou durée inchangée
+                continue;
+            }
+            Integer previousDuration = row.getDuration();
+            row.setDuration(value.duration());
+            TimeSheet timeSheet = row.getTimeSheet();
+            statisticsRollupService.entryChanged(timeSheet.getUser().getId(), timeSheet.getEntryDate(), row.getTaskId(),
+                    previousDuration, row.getCompleted(), row);
+            changed.put(timeSheet.getId(), timeSheet);
+        }
+
+        // Nouvelle version des feuilles modifiées (ETag). Comme dans TimeSheetService, les lignes des tâches
+        // sont écrites avant de verrouiller les feuilles (dans l'ordre des ID), relues pour leur version courante
+        entityManager.flush();
+        for (Integer timeSheetId : new TreeSet<>(changed.keySet())) {
+            TimeSheet timeSheet = changed.get(timeSheetId);
+            entityManager.refresh(timeSheet, LockModeType.PESSIMISTIC_WRITE);
+            entityManager.lock(timeSheet, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        }
+        for (TimeSheet timeSheet : changed.values()) {
+            eventPublisher.publishEvent(new TimeSheetChangedEvent(TimeSheetChangedEvent.Type.TASKS_CHANGED,
+                    timeSheet.getId(), timeSheet.getUser().getId(), Set.of(timeSheet.getEntryDate())));
+        }
+    }
+
+    /**
+     * Enregistre les durées encore en attente (une ligne par durée), remplacées atomiquement
+     */
+    private void spool() {
+        Path temp = spoolFile.resolveSibling(SPOOL_FILE + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Pending value : pending.values()) {
+                    writer.write(value.timeSheetId() + ";" + value.taskId() + ";" + value.ownerId() + ";"
+                            + value.duration() + ";" + value.at() + ";" + value.attempts());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, spoolFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.warn("{} durées du chronomètre non écrites à l'arrêt, enregistrées dans {}", pending.size(), spoolFile);
+        } catch (IOException e) {
+            logger.error("Impossible d'enregistrer les {} durées du chronomètre non écrites : {}", pending.size(), pending.values(), e);
+        }
+    }
+
+    /**
+     * Reprend les durées enregistrées à l'arrêt précédent ; elles sont écrites au prochain vidage
+     */
+    private void restore() throws IOException {
+        if (!Files.exists(spoolFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(spoolFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(";");
+            if (fields.length != 6) {
+                continue;
+            }
+            try {
+                merge(new Pending(Integer.valueOf(fields[0]), Integer.valueOf(fields[1]), Integer.valueOf(fields[2]),
+                        Integer.parseInt(fields[3]), Long.parseLong(fields[4]), Integer.parseInt(fields[5])));
+            } catch (NumberFormatException e) {
+                logger.warn("Ligne ignorée dans {} : {}", spoolFile, line);
+            }
+        }
+        Files.delete(spoolFile);
+        logger.info("{} durées du chronomètre reprises depuis {}", pending.size(), spoolFile);
+    }
+}
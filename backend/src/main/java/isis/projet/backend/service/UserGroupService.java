@@ -6,6 +6,7 @@ import isis.projet.backend.repository.UserGroupRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Service
@@ -37,6 +38,19 @@ public class UserGroupService {
         return hasUserRole(userId, groupId, "OWNER");
     }
 
+    /**
+     * Vérifie en une requête si un utilisateur est propriétaire d'au moins un des groupes
+     * @param userId ID de l'utilisateur
+     * @param groupIds IDs des groupes
+     * @return true si l'utilisateur est propriétaire d'un des groupes, false sinon
+     */
+    public boolean isOwnerOfAnyGroup(Integer userId, Collection<Integer> groupIds) {
+        if (groupIds.isEmpty()) {
+            return false;
+        }
+        return userGroupRepository.existsByUserIdAndRoleAndGroupIdIn(userId, "OWNER", groupIds);
+    }
+
     /**
      * Vérifie si un utilisateur est membre d'un groupe (quel que soit son rôle)
      * @param userId ID de l'utilisateur
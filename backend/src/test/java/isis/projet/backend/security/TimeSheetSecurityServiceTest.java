@@ -0,0 +1,124 @@
+package isis.projet.backend.security;
+
+import isis.projet.backend.entity.*;
+import isis.projet.backend.repository.GroupRepository;
+import isis.projet.backend.repository.UserGroupRepository;
+import isis.projet.backend.repository.UserRepository;
+import isis.projet.backend.security.jwt.JwtUserDetails;
+import isis.projet.backend.service.TimeSheetService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class TimeSheetSecurityServiceTest {
+
+    @Autowired
+    private TimeSheetSecurityService timesheetSecurityService;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private UserGroupRepository userGroupRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User owner;
+    private User groupOwner;
+    private User member;
+    private User stranger;
+    private TimeSheet sheet;
+
+    @BeforeEach
+    void setUp() {
+        owner = createUser("owner");
+        groupOwner = createUser("group-owner");
+        member = createUser("member");
+        stranger = createUser("stranger");
+
+        Group group = groupRepository.save(Group.builder().name("Équipe").build());
+        userGroupRepository.save(UserGroup.builder().userId(groupOwner.getId()).groupId(group.getId()).role("OWNER").build());
+        userGroupRepository.save(UserGroup.builder().userId(member.getId()).groupId(group.getId()).role("MEMBER").build());
+
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(LocalDate.of(2024, 8, 1));
+        sheet = timeSheetService.createTimeSheet(timeSheet, owner);
+        timeSheetService.shareTimeSheetWithGroup(sheet.getId(), group.getId(), "WRITE");
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void shouldGrantEditToOwnersAndTimeEntryToMembers() {
+        assertTrue(timesheetSecurityService.canEdit(sheet.getId(), authenticationOf(owner)));
+        assertTrue(timesheetSecurityService.canEdit(sheet.getId(), authenticationOf(groupOwner)));
+        assertFalse(timesheetSecurityService.canEdit(sheet.getId(), authenticationOf(member)));
+        assertFalse(timesheetSecurityService.canEdit(sheet.getId(), authenticationOf(stranger)));
+
+        assertTrue(timesheetSecurityService.canUpdateTasks(sheet.getId(), authenticationOf(owner)));
+        assertTrue(timesheetSecurityService.canUpdateTasks(sheet.getId(), authenticationOf(member)));
+        assertFalse(timesheetSecurityService.canUpdateTasks(sheet.getId(), authenticationOf(stranger)));
+        assertFalse(timesheetSecurityService.canUpdateTasks(-1, authenticationOf(owner)));
+
+        assertEquals(owner.getId(), timesheetSecurityService.access(sheet.getId(), authenticationOf(member)).orElseThrow().getOwnerId());
+    }
+
+    @Test
+    void shouldAnswerEachRequestWithOneQuery() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            Authentication authentication = authenticationOf(member);
+            assertTrue(timesheetSecurityService.canUpdateTasks(sheet.getId(), authentication));
+            assertFalse(timesheetSecurityService.canEdit(sheet.getId(), authentication));
+            assertTrue(timesheetSecurityService.canUpdateTasks(sheet.getId(), authentication));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        // Une seule requête EXISTS, mémorisée pour la requête HTTP
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private User createUser(String pseudo) {
+        User user = new User();
+        user.setEmail(pseudo + "@security.example.com");
+        user.setPseudo(pseudo);
+        user.setPassword("secret");
+        user.setRole("USER");
+        return userRepository.save(user);
+    }
+
+    private Authentication authenticationOf(User user) {
+        JwtUserDetails userDetails = new JwtUserDetails(user.getId(), user.getEmail(), List.of());
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+}
@@ -0,0 +1,40 @@
+package isis.projet.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurationSketchTest {
+
+    @Test
+    void shouldEstimateQuantilesWithinRelativeAccuracy() {
+        DurationSketch sketch = new DurationSketch();
+        for (int duration = 1; duration <= 1000; duration++) {
+            sketch.add(DurationSketch.bucketOf(duration), 1);
+        }
+
+        assertEquals(1000, sketch.getCount());
+        assertEquals(500, sketch.quantile(0.5), 500 * DurationSketch.RELATIVE_ACCURACY);
+        assertEquals(900, sketch.quantile(0.9), 900 * DurationSketch.RELATIVE_ACCURACY);
+        assertEquals(990, sketch.quantile(0.99), 990 * DurationSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    void shouldMergeAndRemoveEntries() {
+        DurationSketch first = new DurationSketch();
+        first.add(DurationSketch.bucketOf(10), 3);
+        first.add(DurationSketch.bucketOf(0), 1);
+        DurationSketch second = new DurationSketch();
+        second.add(DurationSketch.bucketOf(600), 2);
+
+        first.merge(second);
+        assertEquals(6, first.getCount());
+        assertEquals(0, first.quantile(0));
+        assertEquals(600, first.quantile(1), 600 * DurationSketch.RELATIVE_ACCURACY);
+
+        // Une suppression est un compteur négatif
+        first.add(DurationSketch.bucketOf(600), -2);
+        assertEquals(10, first.quantile(1), 10 * DurationSketch.RELATIVE_ACCURACY);
+        assertNull(new DurationSketch().quantile(0.5));
+    }
+}
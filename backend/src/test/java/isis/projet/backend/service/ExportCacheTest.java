@@ -0,0 +1,49 @@
+package isis.projet.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldKeepCompletedExportsAndEvictLeastRecentlyUsed() throws IOException {
+        ExportCache cache = new ExportCache(DataSize.ofBytes(10), directory.toString());
+        LocalDate month = LocalDate.of(2024, 7, 1);
+        String first = cache.keyOf(1, ExportFormat.CSV, month, month.plusMonths(1), "3-7-12");
+        String second = cache.keyOf(1, ExportFormat.CSV, month, month.plusMonths(1), "3-8-12");
+        assertNotEquals(first, second);
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        cache.write(first, ExportFormat.CSV, response, out -> out.write("123456".getBytes()));
+        assertEquals("123456", response.toString());
+        assertEquals("123456", Files.readString(cache.get(first).orElseThrow()));
+
+        // Dépassement de la taille maximale : l'export le moins récemment utilisé est supprimé
+        cache.write(second, ExportFormat.CSV, new ByteArrayOutputStream(), out -> out.write("abcdef".getBytes()));
+        assertTrue(cache.get(first).isEmpty());
+        assertTrue(cache.get(second).isPresent());
+
+        // Un export interrompu n'est pas conservé
+        String failed = cache.keyOf(2, ExportFormat.PDF, null, null, "0-0-0");
+        assertThrows(IOException.class, () -> cache.write(failed, ExportFormat.PDF, new ByteArrayOutputStream(), out -> {
+            out.write(1);
+            throw new IOException("Client déconnecté");
+        }));
+        assertTrue(cache.get(failed).isEmpty());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.ExportDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Les exports sont générés par les threads du service (la classe n'est pas @Transactional)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportJobServiceTest {
+
+    // Utilisateur sans feuille de temps : l'export ne contient que l'en-tête
+    private static final Integer USER_ID = -1;
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Test
+    void shouldRunExportInBackgroundAndDeleteFileOnCancel() throws Exception {
+        ExportDTO.ExportJobStatus job = exportJobService.submit(USER_ID, new ExportDTO.ExportRequest("csv", null, null));
+        assertEquals("csv", job.getFormat());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        ExportDTO.ExportJobStatus status = job;
+        while (!"DONE".equals(status.getStatus()) && System.currentTimeMillis() < deadline) {
+            assertNotEquals("FAILED", status.getStatus(), status.getError());
+            Thread.sleep(20);
+            status = exportJobService.getStatus(job.getId(), USER_ID).orElseThrow();
+        }
+        assertEquals("DONE", status.getStatus());
+        assertEquals(100, status.getProgress());
+        assertNotNull(status.getExpiresAt());
+
+        // Une tâche n'est visible que par son propriétaire
+        assertTrue(exportJobService.getStatus(job.getId(), USER_ID - 1).isEmpty());
+
+        Path file = exportJobService.getFile(job.getId(), USER_ID).orElseThrow().path();
+        assertEquals("ID,Date,Icon,UserID,TaskID,TaskName,Duration,StartDate,EndDate\n",
+                Files.readString(file, StandardCharsets.UTF_8));
+
+        assertTrue(exportJobService.cancel(job.getId(), USER_ID));
+        assertFalse(Files.exists(file));
+        assertTrue(exportJobService.getStatus(job.getId(), USER_ID).isEmpty());
+    }
+
+    @Test
+    void shouldRejectUnknownFormat() {
+        assertThrows(RuntimeException.class,
+                () -> exportJobService.submit(USER_ID, new ExportDTO.ExportRequest("docx", null, null)));
+    }
+}
@@ -0,0 +1,65 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsAccumulatorTest {
+
+    @Test
+    void shouldUseIsoWeekBasedYearForWeekKeys() {
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        accumulator.add(LocalDate.of(2020, 12, 31), 1, "Réunion", "DAILY", 1, 1, 10);
+        accumulator.add(LocalDate.of(2021, 1, 3), 1, "Réunion", "DAILY", 1, 1, 20);
+        accumulator.add(LocalDate.of(2024, 12, 30), 1, "Réunion", "DAILY", 1, 1, 30);
+
+        Map<String, Integer> weeks = accumulator.periodStats("week").getTimeDistribution();
+
+        // Le 3 janvier 2021 appartient à la semaine 53 de 2020, le 30 décembre 2024 à la semaine 1 de 2025
+        assertEquals(Map.of("2020-W53", 30, "2025-W01", 30), weeks);
+        assertEquals(List.of("2020-12", "2021-01", "2024-12"),
+                List.copyOf(accumulator.periodStats("month").getTimeDistribution().keySet()));
+    }
+
+    @Test
+    void shouldMergeUnsortedRowsIntoSamePeriod() {
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        accumulator.add(LocalDate.of(2024, 3, 4), 1, "Réunion", "DAILY", 1, 1, 30);
+        accumulator.add(LocalDate.of(2024, 4, 1), 2, "Sport", "WEEKLY", 1, 1, 15);
+        accumulator.add(LocalDate.of(2024, 3, 4), 2, "Sport", "WEEKLY", 2, 1, 45);
+
+        StatisticsDTO.PeriodStats daily = accumulator.periodStats("day");
+        assertEquals(75, daily.getTimeDistribution().get("2024-03-04"));
+        assertEquals(15, daily.getTimeDistribution().get("2024-04-01"));
+        assertEquals(90, daily.getTotalTimeInMinutes());
+        assertEquals(4, daily.getTotalTasks());
+        assertEquals(3, daily.getCompletedTasks());
+    }
+
+    @Test
+    void shouldGroupTasksByCategory() {
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        // Plus de tâches que la capacité initiale pour couvrir l'agrandissement de la table
+        for (int taskId = 1; taskId <= 40; taskId++) {
+            accumulator.add(LocalDate.of(2024, 3, 4), taskId, "Tâche " + taskId, taskId % 2 == 0 ? "DAILY" : null, 1, 1, taskId);
+            accumulator.add(LocalDate.of(2024, 3, 5), taskId, "Tâche " + taskId, taskId % 2 == 0 ? "DAILY" : null, 1, 1, taskId);
+        }
+
+        List<StatisticsDTO.CategoryStats> categories = accumulator.categoryStats();
+
+        assertEquals(2, categories.size());
+        StatisticsDTO.CategoryStats daily = categories.get(0);
+        assertEquals("DAILY", daily.getCategory());
+        assertEquals(20, daily.getTotalTasks());
+        assertEquals(2 * 420, daily.getTotalTimeInMinutes());
+        assertEquals(40, daily.getTasks().get(0).getTaskId());
+        assertEquals(80, daily.getTasks().get(0).getTotalTimeInMinutes());
+        assertEquals("NONE", categories.get(1).getCategory());
+        assertEquals(2 * 400, categories.get(1).getTotalTimeInMinutes());
+    }
+}
@@ -0,0 +1,101 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsCacheTest {
+
+    private static final LocalDate MARCH_4 = LocalDate.of(2024, 3, 4);
+    private static final LocalDate APRIL_1 = LocalDate.of(2024, 4, 1);
+
+    private StatisticsCache statisticsCache;
+    private AtomicInteger computations;
+
+    @BeforeEach
+    void setUp() {
+        statisticsCache = new StatisticsCache(true, 100, Duration.ofMinutes(10));
+        computations = new AtomicInteger();
+    }
+
+    @Test
+    void shouldServeRepeatedRequestsFromCache() {
+        StatisticsCache.Key key = new StatisticsCache.Key(1, "user", null, null);
+
+        StatisticsDTO.StatisticsResponse first = statisticsCache.get(key, this::compute);
+        StatisticsDTO.StatisticsResponse second = statisticsCache.get(key, this::compute);
+
+        assertSame(first, second);
+        assertEquals(1, computations.get());
+
+        StatisticsDTO.CacheStatistics stats = statisticsCache.getStatistics();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void shouldEvictOnlyPeriodsContainingModifiedDates() {
+        StatisticsCache.Key allTime = new StatisticsCache.Key(1, "user", null, null);
+        StatisticsCache.Key march = new StatisticsCache.Key(1, "period", MARCH_4.withDayOfMonth(1), MARCH_4.withDayOfMonth(31));
+        StatisticsCache.Key april = new StatisticsCache.Key(1, "period", APRIL_1, APRIL_1.withDayOfMonth(30));
+        StatisticsCache.Key otherUser = new StatisticsCache.Key(2, "user", null, null);
+        for (StatisticsCache.Key key : List.of(allTime, march, april, otherUser)) {
+            statisticsCache.get(key, this::compute);
+        }
+
+        statisticsCache.onTimeSheetChanged(new TimeSheetChangedEvent(
+                TimeSheetChangedEvent.Type.TASKS_CHANGED, 10, 1, Set.of(MARCH_4)));
+
+        // Les périodes de mars et tout l'historique sont recalculés, avril et l'autre utilisateur restent en cache
+        computations.set(0);
+        statisticsCache.get(april, this::compute);
+        statisticsCache.get(otherUser, this::compute);
+        assertEquals(0, computations.get());
+        statisticsCache.get(allTime, this::compute);
+        statisticsCache.get(march, this::compute);
+        assertEquals(2, computations.get());
+        assertEquals(2, statisticsCache.getStatistics().getInvalidations());
+    }
+
+    @Test
+    void shouldNotCacheResponseComputedBeforeInvalidation() {
+        StatisticsCache.Key key = new StatisticsCache.Key(1, "user", null, null);
+
+        // Une modification est validée pendant le calcul : la réponse peut être périmée
+        statisticsCache.get(key, () -> {
+            statisticsCache.evict(1, Set.of(MARCH_4));
+            return compute();
+        });
+        statisticsCache.get(key, this::compute);
+
+        assertEquals(2, computations.get());
+        statisticsCache.get(key, this::compute);
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void shouldBypassCacheWhenDisabled() {
+        StatisticsCache disabled = new StatisticsCache(false, 100, Duration.ofMinutes(10));
+        StatisticsCache.Key key = new StatisticsCache.Key(1, "user", null, null);
+
+        disabled.get(key, this::compute);
+        disabled.get(key, this::compute);
+
+        assertEquals(2, computations.get());
+        assertEquals(0, disabled.getStatistics().getSize());
+    }
+
+    private StatisticsDTO.StatisticsResponse compute() {
+        computations.incrementAndGet();
+        return StatisticsDTO.StatisticsResponse.builder().build();
+    }
+}
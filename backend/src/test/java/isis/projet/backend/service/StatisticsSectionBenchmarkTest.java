@@ -0,0 +1,137 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import isis.projet.backend.dto.TimeSheetDTO;
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mesure des statistiques d'une période : sections en parallèle (appel hors transaction) et sections
+ * séquentielles (même appel dans une transaction, où les sections sont exécutées l'une après l'autre).
+ * Lecture des entrées brutes, pour que chaque section interroge réellement la base.
+ * Désactivé par défaut : mvn test -Dtest=StatisticsSectionBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(properties = "app.statistics.use-rollup=false")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StatisticsSectionBenchmarkTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2023, 1, 1);
+    private static final int DAYS = 365;
+    private static final int TASKS = 20;
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 30;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<TimeSheet> sheets = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("benchmark@example.com");
+        user.setPseudo("benchmark");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(taskRepository.save(Task.builder().name("Tâche " + i).repetition(i % 2 == 0 ? "DAILY" : "WEEKLY").build()));
+        }
+        for (int day = 0; day < DAYS; day++) {
+            TimeSheet timeSheet = new TimeSheet();
+            timeSheet.setEntryDate(FIRST_DAY.plusDays(day));
+            TimeSheet sheet = timeSheetService.createTimeSheet(timeSheet, user);
+            List<TimeSheetDTO.TaskOperation> operations = new ArrayList<>();
+            for (int i = 0; i < TASKS; i++) {
+                operations.add(TimeSheetDTO.TaskOperation.builder()
+                        .op("add").taskId(tasks.get(i).getId()).duration((day * 7 + i * 13) % 120).build());
+            }
+            timeSheetService.applyTaskBatch(sheet.getId(), operations);
+            sheets.add(sheet);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (TimeSheet sheet : sheets) {
+            List<TimeSheetDTO.TaskOperation> operations = new ArrayList<>();
+            for (Task task : tasks) {
+                operations.add(TimeSheetDTO.TaskOperation.builder().op("remove").taskId(task.getId()).build());
+            }
+            timeSheetService.applyTaskBatch(sheet.getId(), operations);
+            timeSheetService.deleteTimeSheet(sheet.getId());
+        }
+        tasks.forEach(task -> taskRepository.deleteById(task.getId()));
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void compareSequentialAndParallelSections() {
+        LocalDate lastDay = FIRST_DAY.plusDays(DAYS - 1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+
+        Supplier<StatisticsDTO.StatisticsResponse> parallel =
+                () -> statisticsService.getStatisticsByPeriod(user.getId(), FIRST_DAY, lastDay);
+        Supplier<StatisticsDTO.StatisticsResponse> sequential =
+                () -> transaction.execute(status -> statisticsService.getStatisticsByPeriod(user.getId(), FIRST_DAY, lastDay));
+
+        assertEquals(sequential.get(), parallel.get());
+        assertNull(parallel.get().getIncompleteSections());
+
+        long sequentialMedian = medianNanos(sequential);
+        long parallelMedian = medianNanos(parallel);
+        System.out.printf("Statistiques sur %d entrées : séquentiel %.2f ms, parallèle %.2f ms (x%.2f)%n",
+                DAYS * TASKS, sequentialMedian / 1e6, parallelMedian / 1e6, (double) sequentialMedian / parallelMedian);
+    }
+
+    private static long medianNanos(Supplier<?> work) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            work.get();
+        }
+        long[] durations = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            work.get();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+        return durations[MEASURED_RUNS / 2];
+    }
+}
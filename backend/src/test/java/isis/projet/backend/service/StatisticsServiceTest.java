@@ -0,0 +1,200 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.DailyTaskRollupRepository;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class StatisticsServiceTest {
+
+    private static final LocalDate DAY_1 = LocalDate.of(2024, 3, 4);
+    private static final LocalDate DAY_2 = LocalDate.of(2024, 3, 5);
+    private static final LocalDate DAY_3 = LocalDate.of(2024, 4, 1);
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private StatisticsRollupService statisticsRollupService;
+
+    @Autowired
+    private DailyTaskRollupRepository dailyTaskRollupRepository;
+
+    private User user;
+    private TimeSheet first;
+    private TimeSheet second;
+    private Task meeting;
+    private Task sport;
+    private Task reading;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("stats@example.com");
+        user.setPseudo("stats");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        meeting = taskRepository.save(Task.builder().name("Réunion").repetition("DAILY").build());
+        sport = taskRepository.save(Task.builder().name("Sport").repetition("WEEKLY").build());
+        reading = taskRepository.save(Task.builder().name("Lecture").build());
+
+        first = createTimeSheet(DAY_1);
+        addTask(first, meeting, 30);
+        addTask(first, sport, 0);
+
+        second = createTimeSheet(DAY_2);
+        addTask(second, meeting, 15);
+        addTask(second, reading, 45);
+
+        // Feuille sans tâche : comptée dans le résumé mais absente des répartitions
+        createTimeSheet(DAY_3);
+    }
+
+    @Test
+    void shouldAggregateUserStatistics() {
+        StatisticsDTO.StatisticsResponse statistics = statisticsService.getUserStatistics(user.getId());
+
+        StatisticsDTO.UserStatsSummary summary = statistics.getSummary();
+        assertEquals(3, summary.getTotalTimeSheets());
+        assertEquals(4, summary.getTotalTasks());
+        assertEquals(3, summary.getCompletedTasks());
+        assertEquals(90, summary.getTotalTimeInMinutes());
+        assertEquals(75.0, summary.getCompletionRate(), 0.001);
+
+        List<StatisticsDTO.CategoryStats> categories = statistics.getCategories();
+        assertEquals(3, categories.size());
+        assertEquals("WEEKLY", categories.get(2).getCategory());
+        assertEquals(0, categories.get(2).getCompletedTasks());
+
+        StatisticsDTO.CategoryStats daily = categories.stream()
+                .filter(c -> "DAILY".equals(c.getCategory()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(45, daily.getTotalTimeInMinutes());
+        assertEquals(1, daily.getTotalTasks());
+        assertEquals(50.0, daily.getTasks().get(0).getPercentageOfTotal(), 0.001);
+
+        assertEquals(30, statistics.getDailyStats().getTimeDistribution().get("2024-03-04"));
+        assertEquals(60, statistics.getDailyStats().getTimeDistribution().get("2024-03-05"));
+        assertEquals(2, statistics.getDailyStats().getTimeDistribution().size());
+        assertEquals(90, statistics.getMonthlyStats().getTimeDistribution().get("2024-03"));
+        assertEquals(90, statistics.getWeeklyStats().getTotalTimeInMinutes());
+        assertEquals(90, statistics.getWeeklyStats().getTimeDistribution().get("2024-W10"));
+    }
+
+    @Test
+    void shouldKeepRollupInSyncWithTimeSheetChanges() {
+        timeSheetService.updateTaskDuration(first.getId(), sport.getId(), 20);
+        timeSheetService.removeTaskFromTimeSheet(second.getId(), reading.getId());
+
+        TimeSheet moved = TimeSheet.builder()
+                .id(second.getId())
+                .entryDate(DAY_3)
+                .title(second.getTitle())
+                .build();
+        timeSheetService.updateTimeSheet(moved);
+
+        StatisticsDTO.StatisticsResponse statistics = statisticsService.getUserStatistics(user.getId());
+
+        assertEquals(3, statistics.getSummary().getTotalTasks());
+        assertEquals(3, statistics.getSummary().getCompletedTasks());
+        assertEquals(65, statistics.getSummary().getTotalTimeInMinutes());
+        assertEquals(50, statistics.getDailyStats().getTimeDistribution().get("2024-03-04"));
+        assertNull(statistics.getDailyStats().getTimeDistribution().get("2024-03-05"));
+        assertEquals(15, statistics.getDailyStats().getTimeDistribution().get("2024-04-01"));
+    }
+
+    @Test
+    void shouldRebuildRollupFromTimeSheets() {
+        StatisticsDTO.StatisticsResponse before = statisticsService.getUserStatistics(user.getId());
+
+        statisticsRollupService.rebuild();
+
+        assertEquals(before, statisticsService.getUserStatistics(user.getId()));
+    }
+
+    @Test
+    void shouldBackfillEmptyRollupOnStartup() {
+        StatisticsDTO.StatisticsResponse before = statisticsService.getUserStatistics(user.getId());
+        dailyTaskRollupRepository.deleteAllInBatch();
+
+        statisticsRollupService.verify();
+
+        assertEquals(before, statisticsService.getUserStatistics(user.getId()));
+    }
+
+    @Test
+    void shouldRebuildRollupWhenDurationsDrift() {
+        StatisticsDTO.StatisticsResponse before = statisticsService.getUserStatistics(user.getId());
+        // Même nombre d'entrées, durée faussée
+        dailyTaskRollupRepository.increment(user.getId(), meeting.getId(), DAY_1, 0, 0, 0, 5);
+
+        statisticsRollupService.verify();
+
+        assertEquals(before, statisticsService.getUserStatistics(user.getId()));
+    }
+
+    @Test
+    void shouldRestrictStatisticsToPeriod() {
+        StatisticsDTO.StatisticsResponse statistics =
+                statisticsService.getStatisticsByPeriod(user.getId(), DAY_2, DAY_3);
+
+        assertEquals(2, statistics.getSummary().getTotalTimeSheets());
+        assertEquals(60, statistics.getSummary().getTotalTimeInMinutes());
+        assertEquals(1, statistics.getDailyStats().getTimeDistribution().size());
+    }
+
+    @Test
+    void shouldReturnEmptyStatisticsForUserWithoutTimeSheets() {
+        User newcomer = new User();
+        newcomer.setEmail("newcomer@example.com");
+        newcomer.setPseudo("newcomer");
+        newcomer.setPassword("secret");
+        newcomer.setRole("USER");
+        newcomer = userRepository.save(newcomer);
+
+        StatisticsDTO.StatisticsResponse statistics = statisticsService.getUserStatistics(newcomer.getId());
+
+        assertEquals(0, statistics.getSummary().getTotalTimeSheets());
+        assertTrue(statistics.getCategories().isEmpty());
+    }
+
+    private TimeSheet createTimeSheet(LocalDate date) {
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(date);
+        timeSheet.setTitle("Feuille " + date);
+        return timeSheetService.createTimeSheet(timeSheet, user);
+    }
+
+    private void addTask(TimeSheet timeSheet, Task task, int duration) {
+        timeSheetService.addTaskToTimeSheet(timeSheet.getId(), task.getId(), duration);
+    }
+}
@@ -0,0 +1,156 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.TimeSheetTask;
+import isis.projet.backend.entity.TimeSheetTaskId;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.TimeSheetRepository;
+import isis.projet.backend.repository.TimeSheetTaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Incréments concurrents validés chacun dans sa propre transaction (la classe n'est pas @Transactional)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TaskDurationConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 25;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TimeSheetRepository timeSheetRepository;
+
+    @Autowired
+    private TimeSheetTaskRepository timeSheetTaskRepository;
+
+    private User user;
+    private Task task;
+    private TimeSheet sheet;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("concurrency@example.com");
+        user.setPseudo("concurrency");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        task = taskRepository.save(Task.builder().name("Réunion").build());
+
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(LocalDate.of(2024, 7, 1));
+        timeSheet.setTitle("Feuille partagée");
+        sheet = timeSheetService.createTimeSheet(timeSheet, user);
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), task.getId(), 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timeSheetService.removeTaskFromTimeSheet(sheet.getId(), task.getId());
+        timeSheetService.deleteTimeSheet(sheet.getId());
+        taskRepository.deleteById(task.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void shouldNotLoseConcurrentIncrements() throws Exception {
+        long versionBefore = timeSheetRepository.findVersionById(sheet.getId()).orElseThrow();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                        timeSheetService.incrementTaskDuration(sheet.getId(), task.getId(), 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                // Aucun incrément ne doit échouer (conflit de version, verrou mortel)
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TimeSheetTask entry = timeSheetTaskRepository.findById(new TimeSheetTaskId(task.getId(), sheet.getId())).orElseThrow();
+        assertEquals(10 + THREADS * INCREMENTS_PER_THREAD, entry.getDuration());
+        // Une nouvelle version de la feuille par incrément
+        assertEquals(versionBefore + THREADS * INCREMENTS_PER_THREAD,
+                timeSheetRepository.findVersionById(sheet.getId()).orElseThrow());
+
+        assertThrows(RuntimeException.class,
+                () -> timeSheetService.incrementTaskDuration(sheet.getId(), task.getId(), -1000));
+        assertEquals(10 + THREADS * INCREMENTS_PER_THREAD,
+                timeSheetTaskRepository.findById(new TimeSheetTaskId(task.getId(), sheet.getId())).orElseThrow().getDuration());
+    }
+
+    @Test
+    void shouldLetOnlyOneWriterWithSameETagSucceed() throws Exception {
+        long version = timeSheetRepository.findVersionById(sheet.getId()).orElseThrow();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int duration = 100 + thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        timeSheetService.updateTaskDuration(sheet.getId(), task.getId(), duration, version);
+                    } catch (OptimisticLockingFailureException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Tous présentent le même ETag : un seul écrit, les autres reçoivent 412
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(version + 1, timeSheetRepository.findVersionById(sheet.getId()).orElseThrow());
+        assertTrue(timeSheetTaskRepository.findById(new TimeSheetTaskId(task.getId(), sheet.getId()))
+                .orElseThrow().getDuration() >= 100);
+    }
+}
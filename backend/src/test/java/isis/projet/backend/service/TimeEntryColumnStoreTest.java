@@ -0,0 +1,110 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.StatisticsDTO;
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class TimeEntryColumnStoreTest {
+
+    private static final LocalDate DAY_1 = LocalDate.of(2024, 3, 4);
+    private static final LocalDate DAY_2 = LocalDate.of(2024, 3, 5);
+    private static final LocalDate DAY_3 = LocalDate.of(2024, 4, 1);
+
+    @Autowired
+    private TimeEntryColumnStore timeEntryColumnStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    private User user;
+    private TimeSheet first;
+    private Task meeting;
+    private Task reading;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("columns@example.com");
+        user.setPseudo("columns");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        meeting = taskRepository.save(Task.builder().name("Réunion").repetition("DAILY").build());
+        reading = taskRepository.save(Task.builder().name("Lecture").build());
+
+        first = createTimeSheet(DAY_1);
+        timeSheetService.addTaskToTimeSheet(first.getId(), meeting.getId(), 30);
+        TimeSheet second = createTimeSheet(DAY_2);
+        timeSheetService.addTaskToTimeSheet(second.getId(), meeting.getId(), 15);
+        timeSheetService.addTaskToTimeSheet(second.getId(), reading.getId(), 45);
+        createTimeSheet(DAY_3);
+    }
+
+    @Test
+    void shouldAggregateAnyPeriodFromColumns() {
+        assertEquals(3, timeEntryColumnStore.countTimeSheets(user.getId(), null, null));
+        assertEquals(2, timeEntryColumnStore.countTimeSheets(user.getId(), DAY_1, DAY_2));
+
+        StatisticsAccumulator all = timeEntryColumnStore.aggregate(user.getId(), null, null);
+        assertEquals(3, all.getEntries());
+        assertEquals(90, all.getTotalDuration());
+        assertEquals("DAILY", all.categoryStats().get(0).getCategory());
+        assertEquals("Réunion", all.categoryStats().get(0).getTasks().get(0).getTaskName());
+
+        StatisticsDTO.PeriodStats secondDay = timeEntryColumnStore.aggregate(user.getId(), DAY_2, DAY_3).periodStats("day");
+        assertEquals(60, secondDay.getTotalTimeInMinutes());
+        assertEquals(1, secondDay.getTimeDistribution().size());
+    }
+
+    @Test
+    void shouldRereadModifiedDatesAfterChange() {
+        // Chargement initial des colonnes
+        assertEquals(90, timeEntryColumnStore.aggregate(user.getId(), null, null).getTotalDuration());
+
+        timeSheetService.updateTaskDuration(first.getId(), meeting.getId(), 50);
+        TimeSheet fourth = createTimeSheet(DAY_3);
+        timeSheetService.addTaskToTimeSheet(fourth.getId(), reading.getId(), 10);
+
+        // La transaction de test n'est jamais validée : l'événement est transmis directement
+        timeEntryColumnStore.onTimeSheetChanged(new TimeSheetChangedEvent(
+                TimeSheetChangedEvent.Type.TASKS_CHANGED, first.getId(), user.getId(), Set.of(DAY_1, DAY_3)));
+
+        StatisticsAccumulator all = timeEntryColumnStore.aggregate(user.getId(), null, null);
+        assertEquals(4, all.getEntries());
+        assertEquals(120, all.getTotalDuration());
+        assertEquals(4, timeEntryColumnStore.countTimeSheets(user.getId(), null, null));
+        assertEquals(50, all.periodStats("day").getTimeDistribution().get("2024-03-04"));
+        assertEquals(10, all.periodStats("day").getTimeDistribution().get("2024-04-01"));
+    }
+
+    private TimeSheet createTimeSheet(LocalDate date) {
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(date);
+        timeSheet.setTitle("Feuille " + date);
+        return timeSheetService.createTimeSheet(timeSheet, user);
+    }
+}
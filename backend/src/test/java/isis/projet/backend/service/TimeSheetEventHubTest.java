@@ -0,0 +1,28 @@
+package isis.projet.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSheetEventHubTest {
+
+    @Test
+    void shouldCoalesceBySheetAndDropOldest() {
+        TimeSheetEventHub.EventQueue<String> queue = new TimeSheetEventHub.EventQueue<>(2);
+        queue.offer(1, "feuille 1 v1");
+        queue.offer(2, "feuille 2");
+        // Même feuille : l'événement en attente est remplacé et passe en fin de file
+        queue.offer(1, "feuille 1 v2");
+        assertFalse(queue.takeOverflow());
+
+        // File pleine : la modification la plus ancienne est abandonnée
+        queue.offer(3, "feuille 3");
+        assertTrue(queue.takeOverflow());
+        assertFalse(queue.takeOverflow());
+
+        assertEquals("feuille 1 v2", queue.poll());
+        assertEquals("feuille 3", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.TimeSheetDTO;
+import isis.projet.backend.entity.*;
+import isis.projet.backend.repository.GroupRepository;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.UserGroupRepository;
+import isis.projet.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Vérifie que chaque plan de chargement coûte un nombre constant de requêtes,
+ * quel que soit le nombre de feuilles de temps
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class TimeSheetFetchPlanTest {
+
+    private static final int SHEETS = 12;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserGroupService userGroupService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private UserGroupRepository userGroupRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private TimeSheet sharedSheet;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("fetch@example.com");
+        user.setPseudo("fetch");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        Group group = groupRepository.save(Group.builder().name("Équipe").build());
+        userGroupRepository.save(UserGroup.builder().userId(user.getId()).groupId(group.getId()).role("OWNER").build());
+
+        for (int i = 0; i < SHEETS; i++) {
+            TimeSheet timeSheet = new TimeSheet();
+            timeSheet.setEntryDate(LocalDate.of(2024, 3, 1).plusDays(i));
+            timeSheet = timeSheetService.createTimeSheet(timeSheet, user);
+            // Des tâches distinctes par feuille : un chargement par tâche serait visible
+            timeSheetService.addTaskToTimeSheet(timeSheet.getId(), taskRepository.save(Task.builder().name("Tâche " + i).build()).getId(), 30);
+            timeSheetService.addTaskToTimeSheet(timeSheet.getId(), taskRepository.save(Task.builder().name("Autre " + i).build()).getId(), 15);
+            sharedSheet = timeSheet;
+        }
+        timeSheetService.shareTimeSheetWithGroup(sharedSheet.getId(), group.getId(), "WRITE");
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void exportShouldLoadSheetsTasksAndNamesInOneQuery() {
+        String csv = new String(timeSheetService.exportTimeSheetsToCsv(user.getId(), null, null), StandardCharsets.UTF_8);
+
+        assertEquals(1 + SHEETS * 2, csv.split("\n").length);
+        assertTrue(csv.contains("Tâche 0"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void pdfExportShouldReadRowsInOneQuery() {
+        byte[] pdf = timeSheetService.exportTimeSheetsToPdf(user.getId(), null, null);
+
+        assertTrue(new String(pdf, 0, 5, StandardCharsets.ISO_8859_1).startsWith("%PDF"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void ndjsonAndXlsxExportsShouldReadRowsInOneQueryEach() throws Exception {
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        timeSheetService.writeTimeSheetsNdjsonGz(user.getId(), null, null, ndjson);
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        String lines = new String(new GZIPInputStream(new ByteArrayInputStream(ndjson.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertEquals(SHEETS * 2, lines.split("\n").length);
+        assertTrue(lines.endsWith("}\n"));
+        assertTrue(lines.contains("\"taskName\":\"Tâche 0\""));
+
+        ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+        timeSheetService.writeTimeSheetsXlsx(user.getId(), null, null, xlsx);
+        assertEquals(2, statistics.getPrepareStatementCount());
+        // Classeur OOXML : archive zip
+        assertEquals('P', xlsx.toByteArray()[0]);
+        assertEquals('K', xlsx.toByteArray()[1]);
+    }
+
+    @Test
+    void listingShouldUseOneQueryPerExpandedCollection() {
+        List<TimeSheetDTO.TimeSheetSummary> sheets = timeSheetService.listTimeSheetsByUserId(user.getId(), null, null, "tasks,shares");
+
+        assertEquals(SHEETS, sheets.size());
+        assertEquals(2, sheets.get(SHEETS - 1).getTimeSheetTasks().size());
+        // Résumés, tâches, partages utilisateurs, partages groupes
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void authorizationShouldLoadSharesAndCheckOwnershipInTwoQueries() {
+        TimeSheet timeSheet = timeSheetService.getTimeSheetForAuthorization(sharedSheet.getId()).orElseThrow();
+        List<Integer> groupIds = timeSheet.getSharedWithGroups().stream().map(TimeSheetShareGroup::getGroupId).toList();
+
+        assertEquals(user.getId(), timeSheet.getUser().getId());
+        assertTrue(userGroupService.isOwnerOfAnyGroup(user.getId(), groupIds));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,252 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.dto.TimeSheetDTO;
+import isis.projet.backend.entity.Group;
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.GroupRepository;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@RecordApplicationEvents
+class TimeSheetServiceTest {
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("pages@example.com");
+        user.setPseudo("pages");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        // Deux feuilles par jour pour vérifier le départage par ID
+        for (int day = 1; day <= 5; day++) {
+            createTimeSheet(LocalDate.of(2024, 3, day));
+            createTimeSheet(LocalDate.of(2024, 3, day));
+        }
+    }
+
+    @Test
+    void shouldWalkAllPagesWithCursor() {
+        List<TimeSheetDTO.TimeSheetSummary> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TimeSheetDTO.TimeSheetPage page = timeSheetService.getTimeSheetPageByUserId(user.getId(), null, null, 3, cursor, null);
+            seen.addAll(page.getItems());
+            cursor = page.getNext();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(4, pages);
+        assertEquals(10, seen.size());
+        assertEquals(10, seen.stream().map(TimeSheetDTO.TimeSheetSummary::getId).distinct().count());
+        assertEquals(LocalDate.of(2024, 3, 5), seen.get(0).getEntryDate());
+        assertEquals(LocalDate.of(2024, 3, 1), seen.get(9).getEntryDate());
+    }
+
+    @Test
+    void shouldFilterPagesByDateAndRejectInvalidCursor() {
+        TimeSheetDTO.TimeSheetPage page = timeSheetService.getTimeSheetPageByUserId(
+                user.getId(), LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 3), 10, null, null);
+
+        assertEquals(4, page.getItems().size());
+        assertNull(page.getNext());
+        assertThrows(RuntimeException.class,
+                () -> timeSheetService.getTimeSheetPageByUserId(user.getId(), null, null, 10, "pas-un-curseur", null));
+    }
+
+    @Test
+    void shouldListSummariesAndExpandTasksOnDemand() {
+        Task meeting = taskRepository.save(Task.builder().name("Réunion").build());
+        TimeSheet sheet = createTimeSheet(LocalDate.of(2024, 4, 1));
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), meeting.getId(), 30);
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), taskRepository.save(Task.builder().name("Lecture").build()).getId(), 15);
+        timeSheetService.updateTaskCompletionState(sheet.getId(), meeting.getId(), true);
+
+        TimeSheetDTO.TimeSheetSummary lean = timeSheetService.listTimeSheetsByUserId(user.getId(), null, null, null).get(0);
+        assertEquals(sheet.getId(), lean.getId());
+        assertEquals(2, lean.getTaskCount());
+        assertEquals(1, lean.getCompletedTaskCount());
+        assertEquals(45, lean.getTotalDuration());
+        assertNull(lean.getTimeSheetTasks());
+        assertNull(lean.getSharedWithGroups());
+
+        TimeSheetDTO.TimeSheetSummary expanded = timeSheetService.listTimeSheetsByUserId(
+                user.getId(), LocalDate.of(2024, 4, 1), null, "tasks,shares").get(0);
+        assertEquals(2, expanded.getTimeSheetTasks().size());
+        assertTrue(expanded.getTimeSheetTasks().stream().anyMatch(t -> "Réunion".equals(t.getTaskName())));
+        assertTrue(expanded.getSharedWithGroups().isEmpty());
+
+        assertThrows(RuntimeException.class, () -> timeSheetService.listTimeSheetsByUserId(user.getId(), null, null, "user"));
+    }
+
+    @Test
+    void shouldApplyTaskBatchInOrder() {
+        Task meeting = taskRepository.save(Task.builder().name("Réunion").build());
+        Task reading = taskRepository.save(Task.builder().name("Lecture").build());
+        Task writing = taskRepository.save(Task.builder().name("Rédaction").build());
+        TimeSheet sheet = createTimeSheet(LocalDate.of(2024, 5, 1));
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), meeting.getId(), 30);
+
+        TimeSheetDTO.TaskBatchResult result = timeSheetService.applyTaskBatch(sheet.getId(), List.of(
+                TimeSheetDTO.TaskOperation.builder().op("add").taskId(reading.getId()).duration(10).build(),
+                TimeSheetDTO.TaskOperation.builder().op("update").taskId(reading.getId()).duration(25).build(),
+                TimeSheetDTO.TaskOperation.builder().op("complete").taskId(meeting.getId()).completed(true).build(),
+                TimeSheetDTO.TaskOperation.builder().op("add").taskId(writing.getId()).duration(5).build(),
+                TimeSheetDTO.TaskOperation.builder().op("remove").taskId(writing.getId()).build()));
+
+        assertEquals(2, result.getAdded());
+        assertEquals(2, result.getUpdated());
+        assertEquals(1, result.getRemoved());
+
+        TimeSheetDTO.TimeSheetSummary summary = timeSheetService.listTimeSheetsByUserId(
+                user.getId(), LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 1), null).get(0);
+        assertEquals(2, summary.getTaskCount());
+        assertEquals(1, summary.getCompletedTaskCount());
+        assertEquals(55, summary.getTotalDuration());
+
+        assertThrows(RuntimeException.class, () -> timeSheetService.applyTaskBatch(sheet.getId(), List.of(
+                TimeSheetDTO.TaskOperation.builder().op("add").taskId(meeting.getId()).duration(1).build())));
+    }
+
+    @Test
+    void shouldChangeETagsOnWriteAndRejectStaleUpdate() {
+        Task meeting = taskRepository.save(Task.builder().name("Réunion").build());
+        TimeSheet sheet = createTimeSheet(LocalDate.of(2024, 6, 1));
+        String sheetETag = timeSheetService.getTimeSheetETag(sheet.getId()).orElseThrow();
+        String listETag = timeSheetService.getTimeSheetListETag(user.getId(), null, null, null, null, null);
+        assertEquals(listETag, timeSheetService.getTimeSheetListETag(user.getId(), null, null, null, null, null));
+
+        // Une tâche ajoutée change la représentation de la feuille et de la liste
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), meeting.getId(), 30);
+        String updatedETag = timeSheetService.getTimeSheetETag(sheet.getId()).orElseThrow();
+        assertNotEquals(sheetETag, updatedETag);
+        assertNotEquals(listETag, timeSheetService.getTimeSheetListETag(user.getId(), null, null, null, null, null));
+
+        Long staleVersion = TimeSheetService.versionOf(sheet.getId(), sheetETag);
+        Long currentVersion = TimeSheetService.versionOf(sheet.getId(), updatedETag);
+        TimeSheet changes = new TimeSheet();
+        changes.setId(sheet.getId());
+        changes.setEntryDate(sheet.getEntryDate());
+        changes.setTitle("Renommée");
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> timeSheetService.updateTimeSheet(changes, staleVersion));
+        TimeSheet renamed = timeSheetService.updateTimeSheet(changes, currentVersion);
+        assertEquals("Renommée", renamed.getTitle());
+        assertEquals(sheet.getEntryDate(), renamed.getEntryDate());
+
+        // La modification crée une nouvelle version : l'ETag utilisé devient à son tour périmé
+        String renamedETag = timeSheetService.getTimeSheetETag(sheet.getId()).orElseThrow();
+        assertNotEquals(updatedETag, renamedETag);
+        assertEquals(TimeSheetService.eTagOf(renamed.getId(), renamed.getVersion()), renamedETag);
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> timeSheetService.updateTimeSheet(changes, currentVersion));
+    }
+
+    @Test
+    void shouldUpdateSheetWithoutMovingIt() {
+        TimeSheet sheet = createTimeSheet(LocalDate.of(2024, 6, 2));
+        events.clear();
+
+        // Même date : l'ancienne et la nouvelle date ne forment qu'une date dans l'événement
+        TimeSheet changes = new TimeSheet();
+        changes.setId(sheet.getId());
+        changes.setEntryDate(sheet.getEntryDate());
+        changes.setTitle("Sans déplacement");
+        TimeSheet saved = timeSheetService.updateTimeSheet(changes, null);
+
+        assertEquals("Sans déplacement", saved.getTitle());
+        assertEquals(LocalDate.of(2024, 6, 2), saved.getEntryDate());
+        TimeSheetChangedEvent event = events.stream(TimeSheetChangedEvent.class).reduce((first, last) -> last).orElseThrow();
+        assertEquals(TimeSheetChangedEvent.Type.UPDATED, event.type());
+        assertEquals(Set.of(LocalDate.of(2024, 6, 2)), event.entryDates());
+    }
+
+    @Test
+    void shouldShareAndRevokeInBulk() {
+        User first = createUser("first");
+        User second = createUser("second");
+        Group group = groupRepository.save(Group.builder().name("Équipe").build());
+        List<Integer> sheetIds = new ArrayList<>();
+        for (int day = 1; day <= 3; day++) {
+            sheetIds.add(createTimeSheet(LocalDate.of(2024, 9, day)).getId());
+        }
+
+        TimeSheetDTO.ShareBatchResult shared = timeSheetService.shareTimeSheets(sheetIds,
+                List.of(first.getId(), second.getId()), List.of(group.getId()), "READ");
+        assertEquals(9, shared.getCreated());
+        assertEquals(0, shared.getUpdated());
+
+        // Un second partage ne crée rien : il met à jour le niveau d'accès
+        TimeSheetDTO.ShareBatchResult upgraded = timeSheetService.shareTimeSheets(sheetIds,
+                List.of(first.getId(), second.getId()), List.of(group.getId()), "WRITE");
+        assertEquals(0, upgraded.getCreated());
+        assertEquals(9, upgraded.getUpdated());
+        assertEquals(3, timeSheetService.listTimeSheetsSharedWithUser(first.getId(), null).size());
+
+        TimeSheetDTO.ShareBatchResult revoked = timeSheetService.revokeTimeSheetShares(sheetIds.subList(0, 2),
+                List.of(first.getId()), List.of(group.getId()));
+        assertEquals(4, revoked.getRemoved());
+        assertEquals(1, timeSheetService.listTimeSheetsSharedWithUser(first.getId(), null).size());
+        assertEquals(3, timeSheetService.listTimeSheetsSharedWithUser(second.getId(), null).size());
+        assertEquals(1, timeSheetService.listTimeSheetsSharedWithGroup(group.getId(), null).size());
+
+        assertThrows(RuntimeException.class,
+                () -> timeSheetService.shareTimeSheets(sheetIds, List.of(-1), null, "READ"));
+    }
+
+    private User createUser(String pseudo) {
+        User other = new User();
+        other.setEmail(pseudo + "@example.com");
+        other.setPseudo(pseudo);
+        other.setPassword("secret");
+        other.setRole("USER");
+        return userRepository.save(other);
+    }
+
+    private TimeSheet createTimeSheet(LocalDate date) {
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(date);
+        timeSheet.setTitle("Feuille " + date);
+        return timeSheetService.createTimeSheet(timeSheet, user);
+    }
+}
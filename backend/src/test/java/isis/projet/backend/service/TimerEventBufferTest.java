@@ -0,0 +1,129 @@
+package isis.projet.backend.service;
+
+import isis.projet.backend.entity.Task;
+import isis.projet.backend.entity.TimeSheet;
+import isis.projet.backend.entity.TimeSheetTaskId;
+import isis.projet.backend.entity.User;
+import isis.projet.backend.repository.TaskRepository;
+import isis.projet.backend.repository.TimeSheetTaskRepository;
+import isis.projet.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Le tampon écrit dans sa propre transaction : les données de test sont validées (la classe n'est pas @Transactional)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TimerEventBufferTest {
+
+    @Autowired
+    private TimerEventBuffer timerEventBuffer;
+
+    @Autowired
+    private TimeSheetService timeSheetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TimeSheetTaskRepository timeSheetTaskRepository;
+
+    private User user;
+    private TimeSheet sheet;
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("timer@example.com");
+        user.setPseudo("timer");
+        user.setPassword("secret");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        task = taskRepository.save(Task.builder().name("Chrono").build());
+        TimeSheet timeSheet = new TimeSheet();
+        timeSheet.setEntryDate(LocalDate.of(2024, 6, 3));
+        sheet = timeSheetService.createTimeSheet(timeSheet, user);
+        timeSheetService.addTaskToTimeSheet(sheet.getId(), task.getId(), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerEventBuffer.flush();
+        timeSheetService.removeTaskFromTimeSheet(sheet.getId(), task.getId());
+        timeSheetService.deleteTimeSheet(sheet.getId());
+        taskRepository.deleteById(task.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void shouldCoalesceEventsAndExposeThemToReads() {
+        timerEventBuffer.submit(sheet.getId(), task.getId(), user.getId(), 60, 1_000);
+        timerEventBuffer.submit(sheet.getId(), task.getId(), user.getId(), 180, 3_000);
+        // Événement arrivé en retard : ignoré
+        timerEventBuffer.submit(sheet.getId(), task.getId(), user.getId(), 120, 2_000);
+
+        assertEquals(1, timerEventBuffer.getPendingCount());
+        assertEquals(0, duration());
+
+        // Lecture de l'utilisateur : les durées en attente sont écrites avant
+        assertEquals(180, timeSheetService.listTimeSheetsByUserId(user.getId(), null, null, null).get(0).getTotalDuration());
+        assertEquals(0, timerEventBuffer.getPendingCount());
+        assertEquals(180, duration());
+    }
+
+    @Test
+    void directUpdateShouldReplacePendingDuration() {
+        timerEventBuffer.submit(sheet.getId(), task.getId(), user.getId(), 90, System.currentTimeMillis());
+        timeSheetService.updateTaskDuration(sheet.getId(), task.getId(), 30);
+
+        timerEventBuffer.flush();
+        assertEquals(30, duration());
+    }
+
+    @Test
+    void failedDirectUpdateShouldRestorePendingDuration() {
+        Task other = taskRepository.save(Task.builder().name("Hors feuille").build());
+        try {
+            timerEventBuffer.submit(sheet.getId(), other.getId(), user.getId(), 45, System.currentTimeMillis());
+
+            // La tâche n'est pas dans la feuille : l'écriture directe échoue et sa transaction est annulée
+            assertThrows(RuntimeException.class,
+                    () -> timeSheetService.updateTaskDuration(sheet.getId(), other.getId(), 10));
+
+            assertEquals(1, timerEventBuffer.getPendingCount());
+        } finally {
+            timerEventBuffer.flush();
+            taskRepository.deleteById(other.getId());
+        }
+    }
+
+    @Test
+    void rejectedIncrementShouldKeepFlushedDuration() {
+        timerEventBuffer.submit(sheet.getId(), task.getId(), user.getId(), 30, System.currentTimeMillis());
+
+        assertThrows(RuntimeException.class,
+                () -> timeSheetService.incrementTaskDuration(sheet.getId(), task.getId(), -100));
+
+        // La durée en attente a été écrite avant l'ajout refusé, et n'est pas annulée avec lui
+        assertEquals(0, timerEventBuffer.getPendingCount());
+        assertEquals(30, duration());
+    }
+
+    private int duration() {
+        return timeSheetTaskRepository.findById(new TimeSheetTaskId(task.getId(), sheet.getId())).orElseThrow().getDuration();
+    }
+}
@@ -24,10 +24,22 @@ export default {
   /**
    * Récupère les statistiques d'un groupe
    * @param {Number} groupId ID du groupe
-   * @returns {Promise} Statistiques du groupe
+   * @param {String} from Date de début optionnelle (YYYY-MM-DD)
+   * @param {String} to Date de fin optionnelle (YYYY-MM-DD)
+   * @returns {Promise} Statistiques du groupe (totaux, membres, tâches et périodes)
    */
-  async getGroupStatistics(groupId) {
-    return doAjaxRequestWithAuth(`/api/statistics/group/${groupId}`);
+  async getGroupStatistics(groupId, from, to) {
+    let url = `/api/statistics/group/${groupId}`;
+    const params = [];
+
+    if (from) params.push(`from=${from}`);
+    if (to) params.push(`to=${to}`);
+
+    if (params.length > 0) {
+      url += `?${params.join('&')}`;
+    }
+
+    return doAjaxRequestWithAuth(url);
   },
 
   /**
@@ -1,9 +1,18 @@
-import { doAjaxRequestWithAuth } from '@/util/httpInterceptor'
+import { doAjaxRequestWithAuth, httpInterceptor } from '@/util/httpInterceptor'
+import { API_BASE_URL } from '@/config/api.config'
+
+// Les listes renvoient des résumés ; expand ajoute les tâches et/ou les partages de chaque feuille
+const DEFAULT_EXPAND = 'tasks,shares'
+
+function withExpand(url, expand) {
+  if (!expand) return url
+  return `${url}${url.includes('?') ? '&' : '?'}expand=${expand}`
+}
 
 export default {
   // Récupérer toutes les feuilles de temps de l'utilisateur connecté
-  getUserTimeSheets() {
-    return doAjaxRequestWithAuth('/api/timesheets')
+  getUserTimeSheets(expand = DEFAULT_EXPAND) {
+    return doAjaxRequestWithAuth(withExpand('/api/timesheets', expand))
   },
 
   // Récupérer une feuille de temps par son ID
@@ -12,18 +21,18 @@ export default {
   },
 
   // Récupérer les feuilles de temps par date
-  getTimeSheetsByDate(date) {
-    return doAjaxRequestWithAuth(`/api/timesheets/byDate?date=${date}`)
+  getTimeSheetsByDate(date, expand = DEFAULT_EXPAND) {
+    return doAjaxRequestWithAuth(withExpand(`/api/timesheets/byDate?date=${date}`, expand))
   },
 
   // Récupérer les feuilles de temps partagées avec l'utilisateur
-  getSharedTimeSheets() {
-    return doAjaxRequestWithAuth('/api/timesheets/shared')
+  getSharedTimeSheets(expand = DEFAULT_EXPAND) {
+    return doAjaxRequestWithAuth(withExpand('/api/timesheets/shared', expand))
   },
 
   // Récupérer les feuilles de temps partagées avec un groupe
-  getGroupTimeSheets(groupId) {
-    return doAjaxRequestWithAuth(`/api/timesheets/group/${groupId}`)
+  getGroupTimeSheets(groupId, expand = DEFAULT_EXPAND) {
+    return doAjaxRequestWithAuth(withExpand(`/api/timesheets/group/${groupId}`, expand))
   },
 
   // Créer une nouvelle feuille de temps
@@ -68,6 +77,25 @@ export default {
     })
   },
 
+  // Ajouter du temps (minutes, éventuellement négatif) à une tâche sans écraser les ajouts concurrents
+  addTaskDuration(timeSheetId, taskId, minutes) {
+    return doAjaxRequestWithAuth(`/api/timesheets/${timeSheetId}/tasks/${taskId}`, {
+      method: 'PATCH',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ add: minutes })
+    })
+  },
+
+  // Envoyer des événements du chronomètre (écriture différée côté serveur)
+  // events : [{ timeSheetId, taskId, type: 'TICK' | 'HEARTBEAT', duration, at }]
+  sendTimerEvents(events) {
+    return doAjaxRequestWithAuth('/api/timesheets/timer-events', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ events })
+    })
+  },
+
   // Partager une feuille de temps avec un utilisateur
   shareTimeSheetWithUser(timeSheetId, userId, accessLevel) {
     return doAjaxRequestWithAuth(`/api/timesheets/${timeSheetId}/share/user/${userId}?accessLevel=${accessLevel}`, {
@@ -82,6 +110,24 @@ export default {
     })
   },
 
+  // Partager plusieurs feuilles avec plusieurs utilisateurs et/ou groupes en une requête
+  shareTimeSheets(timeSheetIds, { userIds = [], groupIds = [] }, accessLevel) {
+    return doAjaxRequestWithAuth('/api/timesheets/shares:batch', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ timeSheetIds, userIds, groupIds, accessLevel })
+    })
+  },
+
+  // Retirer les partages de plusieurs feuilles avec plusieurs utilisateurs et/ou groupes
+  revokeTimeSheetShares(timeSheetIds, { userIds = [], groupIds = [] }) {
+    return doAjaxRequestWithAuth('/api/timesheets/shares:revoke', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ timeSheetIds, userIds, groupIds })
+    })
+  },
+
   removeTaskFromTimeSheet(timeSheetId, taskId) {
     return doAjaxRequestWithAuth(`/api/timesheets/${timeSheetId}/tasks/${taskId}`, {
       method: 'DELETE'
@@ -112,5 +158,35 @@ export default {
         'Accept': 'text/csv'
       }
     })
+  },
+
+  // Démarrer un export en arrière-plan (format : 'csv' ou 'pdf') ; renvoie l'état de la tâche
+  startExport(format, startDate, endDate) {
+    return doAjaxRequestWithAuth('/api/exports', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ format, startDate, endDate })
+    })
+  },
+
+  // État et progression d'un export (status : QUEUED, RUNNING, DONE, FAILED)
+  getExportStatus(jobId) {
+    return doAjaxRequestWithAuth(`/api/exports/${jobId}`)
+  },
+
+  // Télécharger le fichier d'un export terminé
+  async downloadExport(jobId) {
+    const response = await httpInterceptor(new URL(`/api/exports/${jobId}/file`, API_BASE_URL).toString())
+    if (!response.ok) {
+      throw new Error(`Erreur ${response.status}: ${await response.text()}`)
+    }
+    return response.blob()
+  },
+
+  // Annuler un export en cours ou supprimer un export terminé
+  cancelExport(jobId) {
+    return doAjaxRequestWithAuth(`/api/exports/${jobId}`, {
+      method: 'DELETE'
+    })
   }
 }
@@ -0,0 +1,104 @@
+import { useAuthStore } from '@/stores/auth'
+import { API_BASE_URL } from '@/config/api.config'
+
+// Flux des modifications de feuilles de temps (Server-Sent Events) partagé par tous les composants.
+// EventSource ne permet pas d'envoyer l'en-tête Authorization : le flux est lu avec fetch.
+const listeners = new Set()
+let controller = null
+let connected = false
+let retryDelay = 1000
+
+function dispatch(name, data) {
+  let payload = null
+  if (data) {
+    try {
+      payload = JSON.parse(data)
+    } catch (e) {
+      payload = data
+    }
+  }
+  listeners.forEach(listener => listener(name, payload))
+}
+
+async function connect() {
+  const authStore = useAuthStore()
+  controller = new AbortController()
+  const current = controller
+
+  try {
+    const response = await fetch(new URL('/api/timesheets/stream', API_BASE_URL).toString(), {
+      headers: {
+        'Accept': 'text/event-stream',
+        'Authorization': authStore.getAuthorizationHeader()
+      },
+      signal: current.signal
+    })
+    if (!response.ok || !response.body) {
+      throw new Error(`Flux indisponible (${response.status})`)
+    }
+    retryDelay = 1000
+    connected = true
+
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader()
+    let buffer = ''
+    let name = 'message'
+    let data = []
+    while (true) {
+      const { value, done } = await reader.read()
+      if (done) break
+      buffer += value
+      let index
+      while ((index = buffer.indexOf('\n')) >= 0) {
+        const line = buffer.slice(0, index).replace(/\r$/, '')
+        buffer = buffer.slice(index + 1)
+        if (line === '') {
+          // Fin d'un événement
+          if (data.length > 0 || name !== 'message') dispatch(name, data.join('\n'))
+          name = 'message'
+          data = []
+        } else if (line.startsWith('event:')) {
+          name = line.slice(6).trim()
+        } else if (line.startsWith('data:')) {
+          data.push(line.slice(5).replace(/^ /, ''))
+        }
+      }
+    }
+  } catch (error) {
+    if (current.signal.aborted) return
+    console.warn('Flux des feuilles de temps interrompu:', error.message)
+  }
+  connected = false
+
+  // Reconnexion (le serveur renvoie ready : les abonnés rechargent leurs données)
+  if (!current.signal.aborted && listeners.size > 0) {
+    setTimeout(() => {
+      if (controller === current && listeners.size > 0) connect()
+    }, retryDelay)
+    retryDelay = Math.min(retryDelay * 2, 30000)
+  }
+}
+
+export default {
+  /**
+   * Abonne un composant aux modifications de feuilles de temps
+   * @param {Function} listener Appelé avec le nom de l'événement (ready, timesheet, resync) et ses données
+   * @returns {Function} Désabonnement
+   */
+  subscribe(listener) {
+    listeners.add(listener)
+    if (!controller) {
+      connect()
+    } else if (connected) {
+      // Flux déjà ouvert : même signal d'ouverture que pour le premier abonné
+      listener('ready', null)
+    }
+    return () => {
+      listeners.delete(listener)
+      if (listeners.size === 0 && controller) {
+        controller.abort()
+        controller = null
+        connected = false
+      }
+    }
+  }
+}